@@ -17,6 +17,23 @@ export async function listAllChatHistoryByPageForAdmin(
   })
 }
 
+/** 此处后端没有提供注释 GET /chatHistory/app/cursor */
+export async function listAppChatHistoryByCursor(
+  // 叠加生成的Param类型 (非body参数swagger默认没有生成对象)
+  params: API.listAppChatHistoryByCursorParams,
+  options?: { [key: string]: any }
+) {
+  return request<API.BaseResponseCursorPageChatHistoryVO>('/chatHistory/app/cursor', {
+    method: 'GET',
+    params: {
+      // pageSize has a default value: 10
+      pageSize: '10',
+      ...params,
+    },
+    ...(options || {}),
+  })
+}
+
 /** 此处后端没有提供注释 GET /chatHistory/app */
 export async function listAppChatHistory(
   // 叠加生成的Param类型 (非body参数swagger默认没有生成对象)
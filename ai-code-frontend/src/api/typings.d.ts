@@ -168,6 +168,12 @@ declare namespace API {
     message?: string
   }
 
+  type BaseResponseCursorPageChatHistoryVO = {
+    code?: number
+    data?: CursorPageChatHistoryVO
+    message?: string
+  }
+
   type BaseResponsePageChatHistoryVO = {
     code?: number
     data?: PageChatHistoryVO
@@ -278,6 +284,12 @@ declare namespace API {
     userAccount?: string
   }
 
+  type listAppChatHistoryByCursorParams = {
+    appId: number
+    pageSize?: number
+    cursor?: string
+  }
+
   type listAppChatHistoryParams = {
     appId: number
     pageSize?: number
@@ -322,6 +334,12 @@ declare namespace API {
     optimizeCountQuery?: boolean
   }
 
+  type CursorPageChatHistoryVO = {
+    records?: ChatHistoryVO[]
+    nextCursor?: string
+    hasMore?: boolean
+  }
+
   type PageChatHistoryVO = {
     records?: ChatHistoryVO[]
     pageNumber?: number
@@ -77,12 +77,26 @@ CREATE TABLE `chat_history`  (
   `updateTime` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP(0) ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '更新时间',
   `isDelete` tinyint(4) NOT NULL DEFAULT 0 COMMENT '是否删除',
   `onlyId` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '相同消息字符',
+  `blobKey` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '超长消息转存的内容哈希',
   PRIMARY KEY (`id`) USING BTREE,
   INDEX `idx_appId`(`appId`) USING BTREE,
   INDEX `idx_createTime`(`createTime`) USING BTREE,
-  INDEX `idx_appId_createTime`(`appId`, `createTime`) USING BTREE
+  INDEX `idx_appId_createTime_id`(`appId`, `createTime`, `id`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 313889877698203649 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '对话历史' ROW_FORMAT = Dynamic;
 
+-- ----------------------------
+-- Table structure for chat_history_blob
+-- ----------------------------
+DROP TABLE IF EXISTS `chat_history_blob`;
+CREATE TABLE `chat_history_blob`  (
+  `blobKey` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '原始内容 sha256',
+  `content` mediumblob NOT NULL COMMENT 'deflate 压缩后的内容',
+  `originalSize` int(11) NOT NULL COMMENT '原始字节数',
+  `compressedSize` int(11) NOT NULL COMMENT '压缩后字节数',
+  `createTime` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP(0) COMMENT '创建时间',
+  PRIMARY KEY (`blobKey`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '对话历史大内容（压缩、按哈希去重）' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for thumb
 -- ----------------------------
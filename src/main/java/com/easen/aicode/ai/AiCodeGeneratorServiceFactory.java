@@ -1,27 +1,43 @@
 package com.easen.aicode.ai;
 
 import com.easen.aicode.ai.guardrail.PromptSafetyInputGuardrail;
+import com.easen.aicode.ai.memory.ChatMemoryWatermarkManager;
+import com.easen.aicode.ai.memory.HydratingChatMemory;
+import com.easen.aicode.ai.memory.TokenBudgetChatMemory;
 import com.easen.aicode.ai.tools.FileWriteTool;
 import com.easen.aicode.ai.tools.ToolManager;
+import com.easen.aicode.config.ChatMemoryConfig;
 import com.easen.aicode.exception.BusinessException;
 import com.easen.aicode.exception.ErrorCode;
 import com.easen.aicode.model.enums.CodeGenTypeEnum;
 import com.easen.aicode.service.ChatHistoryService;
-import com.easen.aicode.utils.SpringContextUtil;
 import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
 @Configuration
@@ -31,6 +47,12 @@ public class AiCodeGeneratorServiceFactory {
     @Resource(name = "openAiChatModel")
     private ChatModel chatModel;
 
+    @Resource(name = "streamingChatModel")
+    private StreamingChatModel streamingChatModel;
+
+    @Resource(name = "reasoningStreamingChatModel")
+    private StreamingChatModel reasoningStreamingChatModel;
+
     @Resource
     private RedisChatMemoryStore redisChatMemoryStore;
 
@@ -40,24 +62,93 @@ public class AiCodeGeneratorServiceFactory {
     @Resource
     private ToolManager toolManager;
 
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ChatMemoryWatermarkManager chatMemoryWatermarkManager;
+
+    /**
+     * 历史记忆加载线程池（虚拟线程，限制并发数，避免大量冷启动同时压到数据库）
+     */
+    private ExecutorService hydrationExecutor;
+
+    /**
+     * 历史记忆加载耗时
+     */
+    private Timer hydrationTimer;
+
+    /**
+     * Redis 记忆已是最新、跳过数据库加载的次数
+     */
+    private Counter hydrationSkippedCounter;
+
+    /**
+     * AI 服务实例缓存（异步加载）
+     * 缓存策略：
+     * - 最大缓存 1000 个实例
+     * - 写入后 30 分钟过期
+     * - 访问后 10 分钟过期
+     */
+    private AsyncLoadingCache<ServiceCacheKey, CachedService> serviceCache;
+
+    @PostConstruct
+    public void init() {
+        hydrationExecutor = Executors.newFixedThreadPool(chatMemoryConfig.getHydrationConcurrency(),
+                Thread.ofVirtual().name("chat-memory-hydration-", 0).factory());
+        hydrationTimer = Timer.builder("ai.chat.memory.hydration")
+                .description("从数据库加载历史对话记忆的耗时")
+                .register(meterRegistry);
+        hydrationSkippedCounter = Counter.builder("ai.chat.memory.hydration.skipped")
+                .description("Redis 记忆水位线命中、跳过历史加载的次数")
+                .register(meterRegistry);
+        serviceCache = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofMinutes(30))
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .recordStats()
+                .removalListener((key, value, cause) -> {
+                    log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
+                })
+                .buildAsync(key -> createAiCodeGeneratorService(key.appId(), key.codeGenType()));
+        // 命中率、冷加载耗时等统计指标
+        CaffeineCacheMetrics.monitor(meterRegistry, serviceCache, "aiCodeGeneratorService");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hydrationExecutor.shutdownNow();
+    }
+
     /**
      * 创建新的 AI 服务实例
+     * 历史记忆在独立线程池中异步加载，构建服务本身不访问数据库
      */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
+    private CachedService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
+        int maxMessages = chatMemoryConfig.getMaxMessages();
+        // 根据 appId 构建独立的对话记忆，按代码生成类型限制 token 预算
+        TokenBudgetChatMemory budgetChatMemory = TokenBudgetChatMemory
                 .builder()
                 .id(appId)
                 .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(20)
+                .maxTokens(chatMemoryConfig.resolveMaxTokens(codeGenType))
+                .maxMessages(maxMessages)
+                .keepRecentMessages(chatMemoryConfig.getKeepRecentMessages())
                 .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+        // 从数据库异步加载历史对话，首次使用记忆时再写入
+        AtomicReference<Long> loadedLatestId = new AtomicReference<>();
+        CompletableFuture<List<ChatMessage>> historyFuture = CompletableFuture.supplyAsync(
+                () -> loadHistoryIfStale(appId, maxMessages, loadedLatestId), hydrationExecutor);
+        HydratingChatMemory chatMemory = new HydratingChatMemory(budgetChatMemory, historyFuture,
+                chatMemoryConfig.getHydrationWaitTimeout(),
+                () -> chatMemoryWatermarkManager.set(appId, loadedLatestId.get()));
         // 根据代码生成类型选择不同的模型配置
-        return switch (codeGenType) {
+        AiCodeGeneratorService aiCodeGeneratorService = switch (codeGenType) {
             case VUE_PROJECT -> {
-                // 使用多例模式的 StreamingChatModel 解决并发问题
-                StreamingChatModel reasoningStreamingChatModel = SpringContextUtil.getBean("reasoningStreamingChatModelPrototype", StreamingChatModel.class);
+                // 所有应用共享同一个推理模型实例，请求级状态都在单次调用内
                 yield AiServices.builder(AiCodeGeneratorService.class)
                         .streamingChatModel(reasoningStreamingChatModel)
                         .chatMemoryProvider(memoryId -> chatMemory)
@@ -70,11 +161,10 @@ public class AiCodeGeneratorServiceFactory {
                         .build();
             }
             case HTML, MULTI_FILE -> {
-                // 使用多例模式的 StreamingChatModel 解决并发问题
-                StreamingChatModel openAiStreamingChatModel = SpringContextUtil.getBean("streamingChatModelPrototype", StreamingChatModel.class);
+                // 所有应用共享同一个流式模型实例
                 yield AiServices.builder(AiCodeGeneratorService.class)
                         .chatModel(chatModel)
-                        .streamingChatModel(openAiStreamingChatModel)
+                        .streamingChatModel(streamingChatModel)
                         .chatMemory(chatMemory)
 //                        .inputGuardrails(new PromptSafetyInputGuardrail()) // 添加输入护轨
                         .build();
@@ -82,25 +172,31 @@ public class AiCodeGeneratorServiceFactory {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR,
                     "不支持的代码生成类型: " + codeGenType.getValue());
         };
-
+        return new CachedService(aiCodeGeneratorService, chatMemory);
     }
 
-
     /**
-     * AI 服务实例缓存
-     * 缓存策略：
-     * - 最大缓存 1000 个实例
-     * - 写入后 30 分钟过期
-     * - 访问后 10 分钟过期
+     * 仅当 Redis 记忆落后于数据库时才加载历史
+     * 水位线记录 Redis 记忆对应的最新一条对话 ID，与数据库最新 ID 一致且记忆非空时直接复用
+     *
+     * @param loadedLatestId 输出参数，记录本次加载对应的最新 ID，写入记忆后用于更新水位线
+     * @return 历史消息；Redis 记忆已是最新时返回 null
      */
-    private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener((key, value, cause) -> {
-                log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
-            })
-            .build();
+    private List<ChatMessage> loadHistoryIfStale(long appId, int maxMessages, AtomicReference<Long> loadedLatestId) {
+        Long latestId = chatHistoryService.getLatestChatHistoryId(appId);
+        if (latestId == null) {
+            // 没有任何对话历史，保持 Redis 现状
+            return null;
+        }
+        if (chatMemoryWatermarkManager.isCurrent(appId, latestId)
+                && !redisChatMemoryStore.getMessages(appId).isEmpty()) {
+            hydrationSkippedCounter.increment();
+            log.debug("Redis 对话记忆已是最新，跳过历史加载，appId: {}", appId);
+            return null;
+        }
+        loadedLatestId.set(latestId);
+        return hydrationTimer.record(() -> chatHistoryService.loadChatHistoryMessages(appId, maxMessages));
+    }
 
     /**
      * 根据 appId 获取服务（带缓存）这个方法是为了兼容历史逻辑
@@ -113,15 +209,45 @@ public class AiCodeGeneratorServiceFactory {
      * 根据 appId 和代码生成类型获取服务（带缓存）
      */
     public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        String cacheKey = buildCacheKey(appId, codeGenType);
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
+        try {
+            // 只等待服务构建，不等待历史记忆加载
+            return getAiCodeGeneratorServiceAsync(appId, codeGenType).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "创建 AI 服务失败");
+        }
+    }
+
+    /**
+     * 根据 appId 和代码生成类型异步获取服务（带缓存）
+     */
+    public CompletableFuture<AiCodeGeneratorService> getAiCodeGeneratorServiceAsync(long appId, CodeGenTypeEnum codeGenType) {
+        return serviceCache.get(new ServiceCacheKey(appId, codeGenType)).thenApply(CachedService::service);
+    }
+
+    /**
+     * 预热：构建服务并在历史查询完成后立即写入记忆
+     *
+     * @param executor 执行记忆写入的线程池
+     * @return 预热完成的 future
+     */
+    public CompletableFuture<Void> warmUp(long appId, CodeGenTypeEnum codeGenType, Executor executor) {
+        return serviceCache.get(new ServiceCacheKey(appId, codeGenType))
+                .thenCompose(cachedService -> cachedService.chatMemory().hydrateAsync(executor));
+    }
+
+    /**
+     * 缓存键
+     */
+    private record ServiceCacheKey(long appId, CodeGenTypeEnum codeGenType) {
     }
 
     /**
-     * 构建缓存键
+     * 缓存值：服务实例及其对话记忆
      */
-    private String buildCacheKey(long appId, CodeGenTypeEnum codeGenType) {
-        return appId + "_" + codeGenType.getValue();
+    private record CachedService(AiCodeGeneratorService service, HydratingChatMemory chatMemory) {
     }
 
     /**
@@ -0,0 +1,144 @@
+package com.easen.aicode.ai;
+
+import com.easen.aicode.config.AiServiceWarmUpConfig;
+import com.easen.aicode.model.entity.App;
+import com.easen.aicode.model.enums.CodeGenTypeEnum;
+import com.easen.aicode.service.AppService;
+import com.easen.aicode.service.ChatHistoryService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI 服务启动预热
+ * 在应用就绪（readiness）之前，为最近活跃的应用并行构建 AI 服务并加载对话记忆，
+ * 避免重启后每个应用的第一次对话都要承担冷启动开销
+ */
+@Slf4j
+@Component
+public class AiServiceWarmUpRunner implements ApplicationRunner {
+
+    @Resource
+    private AiServiceWarmUpConfig aiServiceWarmUpConfig;
+
+    @Resource
+    private ChatHistoryService chatHistoryService;
+
+    @Resource
+    private AppService appService;
+
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 计划预热的应用数
+     */
+    private final AtomicInteger targetCount = new AtomicInteger();
+
+    /**
+     * 预热成功的应用数
+     */
+    private final AtomicInteger warmedCount = new AtomicInteger();
+
+    /**
+     * 预热失败的应用数
+     */
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!aiServiceWarmUpConfig.isEnabled()) {
+            return;
+        }
+        registerMetrics();
+        long startTime = System.currentTimeMillis();
+        List<App> appList;
+        try {
+            LocalDateTime since = LocalDateTime.now().minus(aiServiceWarmUpConfig.getLookback());
+            List<Long> appIds = chatHistoryService.listRecentActiveAppIds(since, aiServiceWarmUpConfig.getMaxApps());
+            if (appIds.isEmpty()) {
+                log.info("没有需要预热的应用");
+                return;
+            }
+            appList = appService.listByIds(appIds);
+        } catch (Exception e) {
+            // 预热失败不影响启动
+            log.warn("查询预热应用失败，跳过预热", e);
+            return;
+        }
+        targetCount.set(appList.size());
+        // 每个应用的记忆写入都在独立的虚拟线程上进行
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        CompletableFuture<Void> allFuture = CompletableFuture.allOf(appList.stream()
+                .map(app -> warmUp(app, executor))
+                .toArray(CompletableFuture[]::new));
+        // 全部完成后再关闭，超出时间预算的应用仍可在后台完成
+        allFuture.whenComplete((result, error) -> executor.shutdown());
+        try {
+            allFuture.get(aiServiceWarmUpConfig.getTimeBudget().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("AI 服务预热超出时间预算 {}，剩余应用转为后台预热", aiServiceWarmUpConfig.getTimeBudget());
+        } catch (ExecutionException e) {
+            log.warn("AI 服务预热异常", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("AI 服务预热结束: 目标 {} 个，成功 {} 个，失败 {} 个，耗时 {} ms",
+                targetCount.get(), warmedCount.get(), failedCount.get(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 预热单个应用，失败只记录不抛出
+     */
+    private CompletableFuture<Void> warmUp(App app, Executor executor) {
+        CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+        if (codeGenType == null) {
+            failedCount.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+        return aiCodeGeneratorServiceFactory.warmUp(app.getId(), codeGenType, executor)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        warmedCount.incrementAndGet();
+                    } else {
+                        failedCount.incrementAndGet();
+                        log.warn("预热应用失败: appId={}", app.getId(), error);
+                    }
+                    return null;
+                });
+    }
+
+    private void registerMetrics() {
+        Gauge.builder("ai.warmup.apps.target", targetCount, AtomicInteger::get)
+                .description("启动预热计划的应用数")
+                .register(meterRegistry);
+        Gauge.builder("ai.warmup.apps.warmed", warmedCount, AtomicInteger::get)
+                .description("启动预热成功的应用数")
+                .register(meterRegistry);
+        Gauge.builder("ai.warmup.apps.failed", failedCount, AtomicInteger::get)
+                .description("启动预热失败的应用数")
+                .register(meterRegistry);
+        Gauge.builder("ai.warmup.coverage", this, runner -> runner.targetCount.get() == 0
+                        ? 1.0 : (double) runner.warmedCount.get() / runner.targetCount.get())
+                .description("启动预热覆盖率")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,336 @@
+package com.easen.aicode.ai;
+
+import com.easen.aicode.ai.model.message.QueueStatusMessage;
+import com.easen.aicode.ai.model.message.StreamMessage;
+import com.easen.aicode.config.GenerationAdmissionConfig;
+import com.easen.aicode.exception.BusinessException;
+import com.easen.aicode.exception.ErrorCode;
+import com.easen.aicode.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 代码生成准入控制
+ * <p>
+ * 限制单节点同时进行的生成任务数（总数 + 按代码生成类型），超出的请求进入排队：
+ * 每个用户一个 FIFO 队列，用户之间轮转出队，避免单个用户的连续请求占满名额。
+ * 排队期间通过 {@link QueueStatusMessage} 推送预计位置，超过最长等待时间返回错误
+ */
+@Slf4j
+@Component
+public class GenerationAdmissionManager {
+
+    @Resource
+    private GenerationAdmissionConfig generationAdmissionConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Object lock = new Object();
+
+    /**
+     * 正在执行的任务数
+     */
+    private int active;
+
+    /**
+     * 各类型正在执行的任务数
+     */
+    private final Map<CodeGenTypeEnum, Integer> activeByType = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 排队中的请求：userId -> 该用户的请求队列，按轮转顺序排列（刚被服务的用户移到末尾）
+     */
+    private final LinkedHashMap<Long, ArrayDeque<Ticket>> waiting = new LinkedHashMap<>();
+
+    /**
+     * 排队总数
+     */
+    private int waitingCount;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("ai.generation.admission.queue.depth", this, manager -> manager.waitingCount)
+                .description("排队等待执行的生成请求数")
+                .register(meterRegistry);
+        Gauge.builder("ai.generation.admission.active", this, manager -> manager.active)
+                .description("正在执行的生成任务数")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("ai.generation.admission.rejected")
+                .description("排队已满被直接拒绝的生成请求数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 申请执行生成任务
+     *
+     * @param userId      用户 ID
+     * @param codeGenType 代码生成类型
+     * @param generation  获得执行名额后才会调用的生成流
+     * @return 排队状态消息 + 生成流
+     */
+    public Flux<StreamMessage> admit(Long userId, CodeGenTypeEnum codeGenType, Supplier<Flux<StreamMessage>> generation) {
+        if (!generationAdmissionConfig.isEnabled()) {
+            return Flux.defer(generation);
+        }
+        return Flux.create(sink -> {
+            Ticket ticket = new Ticket(userId, codeGenType, generation, sink);
+            // 先设置超时再入队，入队后可能立即被其他线程分配名额
+            ticket.timeout = Schedulers.parallel().schedule(() -> expire(ticket),
+                    generationAdmissionConfig.getMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+            String rejectReason = enqueue(ticket);
+            if (rejectReason != null) {
+                ticket.timeout.dispose();
+                rejectedCounter.increment();
+                sink.error(new BusinessException(ErrorCode.TOO_MANY_REQUEST, rejectReason));
+                return;
+            }
+            sink.onDispose(() -> onDispose(ticket));
+            dispatch();
+        });
+    }
+
+    /**
+     * 加入排队
+     *
+     * @return 拒绝原因，为空表示已加入
+     */
+    private String enqueue(Ticket ticket) {
+        synchronized (lock) {
+            if (waitingCount >= generationAdmissionConfig.getMaxQueueSize()) {
+                return "当前生成请求过多，请稍后再试";
+            }
+            ArrayDeque<Ticket> userQueue = waiting.computeIfAbsent(ticket.userId, key -> new ArrayDeque<>());
+            if (userQueue.size() >= generationAdmissionConfig.getMaxQueuedPerUser()) {
+                return "您已有排队中的生成请求，请等待完成后再试";
+            }
+            userQueue.addLast(ticket);
+            waitingCount++;
+            return null;
+        }
+    }
+
+    /**
+     * 按用户轮转分配空闲名额，并向仍在排队的请求推送最新位置
+     */
+    private void dispatch() {
+        List<Ticket> admitted = new ArrayList<>();
+        List<Ticket> stillWaiting = new ArrayList<>();
+        int queueLength;
+        synchronized (lock) {
+            boolean progress = true;
+            while (progress && waitingCount > 0 && active < generationAdmissionConfig.getMaxConcurrent()) {
+                progress = false;
+                for (Iterator<Map.Entry<Long, ArrayDeque<Ticket>>> iterator = waiting.entrySet().iterator(); iterator.hasNext(); ) {
+                    Map.Entry<Long, ArrayDeque<Ticket>> entry = iterator.next();
+                    Ticket head = entry.getValue().peekFirst();
+                    if (head == null || !hasCapacity(head.codeGenType)) {
+                        continue;
+                    }
+                    ArrayDeque<Ticket> userQueue = entry.getValue();
+                    userQueue.pollFirst();
+                    waitingCount--;
+                    acquireSlot(head.codeGenType);
+                    head.running = true;
+                    admitted.add(head);
+                    // 被服务的用户移到队尾，其他用户优先
+                    iterator.remove();
+                    if (!userQueue.isEmpty()) {
+                        waiting.put(entry.getKey(), userQueue);
+                    }
+                    progress = true;
+                    break;
+                }
+            }
+            queueLength = waitingCount;
+            assignPositions(stillWaiting);
+        }
+        admitted.forEach(this::start);
+        for (Ticket ticket : stillWaiting) {
+            if (!ticket.running && ticket.position != ticket.reportedPosition) {
+                ticket.reportedPosition = ticket.position;
+                long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ticket.enqueuedAt);
+                ticket.sink.next(new QueueStatusMessage(ticket.position, queueLength, waitedMillis));
+            }
+        }
+    }
+
+    /**
+     * 按轮转规则估算位置：第一轮每个用户出一个请求，第二轮再出一个，以此类推
+     */
+    private void assignPositions(List<Ticket> result) {
+        List<List<Ticket>> queues = new ArrayList<>();
+        int maxSize = 0;
+        for (ArrayDeque<Ticket> userQueue : waiting.values()) {
+            queues.add(new ArrayList<>(userQueue));
+            maxSize = Math.max(maxSize, userQueue.size());
+        }
+        int position = 1;
+        for (int round = 0; round < maxSize; round++) {
+            for (List<Ticket> userQueue : queues) {
+                if (round < userQueue.size()) {
+                    Ticket ticket = userQueue.get(round);
+                    ticket.position = position++;
+                    result.add(ticket);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获得名额后启动生成流，结束（完成、失败、取消）时归还名额
+     */
+    private void start(Ticket ticket) {
+        ticket.timeout.dispose();
+        recordWait(ticket, "admitted");
+        Disposable subscription = Flux.defer(ticket.generation)
+                .doFinally(signal -> release(ticket))
+                .subscribe(ticket.sink::next, ticket.sink::error, ticket.sink::complete);
+        ticket.subscription = subscription;
+        // 启动过程中客户端已断开
+        if (ticket.sink.isCancelled()) {
+            subscription.dispose();
+        }
+    }
+
+    private void release(Ticket ticket) {
+        if (!ticket.released.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (lock) {
+            active--;
+            activeByType.merge(ticket.codeGenType, -1, Integer::sum);
+        }
+        dispatch();
+    }
+
+    /**
+     * 客户端断开或流结束
+     */
+    private void onDispose(Ticket ticket) {
+        boolean removed;
+        synchronized (lock) {
+            removed = removeWaiting(ticket);
+        }
+        if (removed) {
+            ticket.timeout.dispose();
+            recordWait(ticket, "cancelled");
+            dispatch();
+        } else if (ticket.subscription != null) {
+            ticket.subscription.dispose();
+        }
+    }
+
+    /**
+     * 排队超时
+     */
+    private void expire(Ticket ticket) {
+        boolean removed;
+        synchronized (lock) {
+            removed = removeWaiting(ticket);
+        }
+        if (!removed) {
+            return;
+        }
+        recordWait(ticket, "timeout");
+        log.warn("生成请求排队超时: userId={}, codeGenType={}", ticket.userId, ticket.codeGenType.getValue());
+        ticket.sink.error(new BusinessException(ErrorCode.TOO_MANY_REQUEST, "排队超时，请稍后再试"));
+        dispatch();
+    }
+
+    private boolean removeWaiting(Ticket ticket) {
+        if (ticket.running) {
+            return false;
+        }
+        ArrayDeque<Ticket> userQueue = waiting.get(ticket.userId);
+        if (userQueue == null || !userQueue.remove(ticket)) {
+            return false;
+        }
+        waitingCount--;
+        if (userQueue.isEmpty()) {
+            waiting.remove(ticket.userId);
+        }
+        return true;
+    }
+
+    private boolean hasCapacity(CodeGenTypeEnum codeGenType) {
+        return active < generationAdmissionConfig.getMaxConcurrent()
+                && activeByType.getOrDefault(codeGenType, 0) < generationAdmissionConfig.resolveMaxConcurrent(codeGenType);
+    }
+
+    private void acquireSlot(CodeGenTypeEnum codeGenType) {
+        active++;
+        activeByType.merge(codeGenType, 1, Integer::sum);
+    }
+
+    private void recordWait(Ticket ticket, String outcome) {
+        Timer.builder("ai.generation.admission.wait")
+                .description("生成请求排队等待时间")
+                .tag("codeGenType", ticket.codeGenType.getValue())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 一次生成请求
+     */
+    private static final class Ticket {
+
+        private final Long userId;
+
+        private final CodeGenTypeEnum codeGenType;
+
+        private final Supplier<Flux<StreamMessage>> generation;
+
+        private final FluxSink<StreamMessage> sink;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * 是否已获得名额（在锁内修改）
+         */
+        private volatile boolean running;
+
+        private volatile Disposable timeout;
+
+        private volatile Disposable subscription;
+
+        private int position;
+
+        private volatile int reportedPosition;
+
+        private Ticket(Long userId, CodeGenTypeEnum codeGenType, Supplier<Flux<StreamMessage>> generation,
+                       FluxSink<StreamMessage> sink) {
+            this.userId = userId;
+            this.codeGenType = codeGenType;
+            this.generation = generation;
+            this.sink = sink;
+        }
+    }
+}
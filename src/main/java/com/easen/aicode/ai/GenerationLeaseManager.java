@@ -0,0 +1,228 @@
+package com.easen.aicode.ai;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.easen.aicode.config.GenerationLeaseConfig;
+import com.easen.aicode.constant.GenerationConstant;
+import com.easen.aicode.utils.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 代码生成分布式租约
+ * <p>
+ * 每个应用同一时刻只允许一个生成任务（跨所有节点）。租约基于 Redisson 可过期信号量（1 个许可），
+ * 获取即占用，不存在"先检查再注册"的竞态；持有节点定时续期，节点宕机后租约到期自动释放。
+ * <p>
+ * 持有者信息（节点、用户）单独保存，用于跨节点校验取消权限；取消请求通过 Redis 广播路由到持有任务的节点
+ */
+@Slf4j
+@Component
+public class GenerationLeaseManager {
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private GenerationLeaseConfig generationLeaseConfig;
+
+    /**
+     * 当前节点标识
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    /**
+     * 本节点持有的租约：appId -> 租约
+     */
+    private final Map<Long, Lease> localLeases = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    private RTopic cancelTopic;
+
+    /**
+     * 租约信息
+     *
+     * @param appId      应用 ID
+     * @param userId     发起生成的用户 ID
+     * @param permitId   信号量许可 ID
+     * @param acquiredAt 获取时间
+     */
+    public record Lease(Long appId, Long userId, String permitId, long acquiredAt) {
+    }
+
+    /**
+     * 租约持有者
+     *
+     * @param nodeId 持有租约的节点
+     * @param userId 发起生成的用户 ID
+     */
+    public record LeaseOwner(String nodeId, Long userId) {
+    }
+
+    @PostConstruct
+    public void init() {
+        cancelTopic = redissonClient.getTopic(GenerationConstant.CANCEL_TOPIC, StringCodec.INSTANCE);
+        long interval = generationLeaseConfig.getHeartbeatInterval().toMillis();
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("generation-lease-heartbeat")
+                .daemon(true)
+                .factory());
+        heartbeatExecutor.scheduleWithFixedDelay(this::renewAll, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("生成租约管理器启动，nodeId: {}", nodeId);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeatExecutor.shutdownNow();
+        // 正常停机时主动释放，不必等租约过期
+        localLeases.values().forEach(this::releaseQuietly);
+        localLeases.clear();
+    }
+
+    /**
+     * 尝试获取应用的生成租约（原子操作，不等待）
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(Long appId, Long userId) {
+        RPermitExpirableSemaphore semaphore = getSemaphore(appId);
+        // 首次使用时初始化为 1 个许可，已存在时不会覆盖
+        semaphore.trySetPermits(1);
+        long leaseMillis = generationLeaseConfig.getLeaseTime().toMillis();
+        String permitId;
+        try {
+            permitId = semaphore.tryAcquire(0, leaseMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (permitId == null) {
+            return false;
+        }
+        Lease lease = new Lease(appId, userId, permitId, System.currentTimeMillis());
+        localLeases.put(appId, lease);
+        getOwnerBucket(appId).set(ownerValue(lease), Duration.ofMillis(leaseMillis));
+        log.info("获取生成租约: appId={}, userId={}, nodeId={}", appId, userId, nodeId);
+        return true;
+    }
+
+    /**
+     * 释放本节点持有的租约
+     */
+    public void release(Long appId) {
+        Lease lease = localLeases.remove(appId);
+        if (lease != null) {
+            releaseQuietly(lease);
+        }
+    }
+
+    /**
+     * 查询租约持有者（可能在其他节点）
+     *
+     * @return 持有者，没有进行中的任务时返回 null
+     */
+    public LeaseOwner getOwner(Long appId) {
+        String value = getOwnerBucket(appId).get();
+        if (StrUtil.isBlank(value)) {
+            return null;
+        }
+        String[] parts = value.split(":");
+        if (parts.length != 3) {
+            return null;
+        }
+        return new LeaseOwner(parts[0], Long.valueOf(parts[1]));
+    }
+
+    /**
+     * 当前节点标识
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 广播取消请求，由持有租约的节点执行
+     *
+     * @param owner 租约持有者
+     */
+    public void publishCancel(Long appId, Long userId, LeaseOwner owner) {
+        cancelTopic.publish(owner.nodeId() + ":" + appId + ":" + userId);
+        log.info("转发取消请求: appId={}, userId={}, targetNode={}", appId, userId, owner.nodeId());
+    }
+
+    /**
+     * 订阅发给本节点的取消请求
+     *
+     * @param handler (appId, userId) 处理器
+     */
+    public void onCancel(BiConsumer<Long, Long> handler) {
+        cancelTopic.addListener(String.class, (channel, message) -> {
+            String[] parts = message.split(":");
+            if (parts.length != 3 || !nodeId.equals(parts[0])) {
+                return;
+            }
+            handler.accept(Long.valueOf(parts[1]), Long.valueOf(parts[2]));
+        });
+    }
+
+    /**
+     * 续期本节点持有的所有租约
+     */
+    private void renewAll() {
+        long leaseMillis = generationLeaseConfig.getLeaseTime().toMillis();
+        for (Lease lease : localLeases.values()) {
+            try {
+                boolean renewed = getSemaphore(lease.appId()).updateLeaseTime(lease.permitId(), leaseMillis, TimeUnit.MILLISECONDS);
+                if (!renewed) {
+                    // 续期不及时（如长时间 GC 或 Redis 不可用）导致租约已过期，其他节点可能已开始生成
+                    log.warn("生成租约已丢失: appId={}, userId={}", lease.appId(), lease.userId());
+                    localLeases.remove(lease.appId(), lease);
+                    continue;
+                }
+                getOwnerBucket(lease.appId()).expire(Duration.ofMillis(leaseMillis));
+            } catch (Exception e) {
+                log.error("生成租约续期失败: appId={}", lease.appId(), e);
+            }
+        }
+    }
+
+    private void releaseQuietly(Lease lease) {
+        try {
+            getSemaphore(lease.appId()).tryRelease(lease.permitId());
+            // 只删除自己写入的持有者信息
+            getOwnerBucket(lease.appId()).compareAndSet(ownerValue(lease), null);
+            log.info("释放生成租约: appId={}, userId={}", lease.appId(), lease.userId());
+        } catch (Exception e) {
+            log.error("释放生成租约失败，等待自动过期: appId={}", lease.appId(), e);
+        }
+    }
+
+    private String ownerValue(Lease lease) {
+        return nodeId + ":" + lease.userId() + ":" + lease.permitId();
+    }
+
+    private RPermitExpirableSemaphore getSemaphore(Long appId) {
+        return redissonClient.getPermitExpirableSemaphore(RedisKeyUtil.getGenerationLeaseKey(appId));
+    }
+
+    private RBucket<String> getOwnerBucket(Long appId) {
+        return redissonClient.getBucket(RedisKeyUtil.getGenerationLeaseOwnerKey(appId), StringCodec.INSTANCE);
+    }
+}
@@ -0,0 +1,351 @@
+package com.easen.aicode.ai;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.easen.aicode.ai.model.message.StreamFrame;
+import com.easen.aicode.ai.model.message.StreamMessage;
+import com.easen.aicode.config.GenerationStreamConfig;
+import com.easen.aicode.config.GenerationStreamConfig.OrphanPolicy;
+import com.easen.aicode.exception.BusinessException;
+import com.easen.aicode.exception.ErrorCode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生成流管理器
+ * <p>
+ * 生成管道（排队、模型调用、流处理、对话历史保存）与客户端连接解耦：管道由管理器订阅，
+ * 客户端只是它的接收者。客户端断开时按 {@link OrphanPolicy} 处理无人接收的管道：
+ * 立即中止上游，或继续生成到完成（有最长时间限制），不会留下无人管理的生成任务。
+ * <p>
+ * 每个生成流按序号保留最近的帧，断线的客户端可以带上最后收到的事件 ID 重新接入并补收，
+ * 多个客户端可以同时接收同一次生成，上游只调用一次
+ */
+@Slf4j
+@Component
+public class GenerationStreamManager {
+
+    @Resource
+    private GenerationStreamConfig generationStreamConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 进行中及刚结束的生成流：appId -> 生成流
+     */
+    private final Map<Long, GenerationStream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * 当前无人接收、仍在继续生成的管道数
+     */
+    private final AtomicInteger orphanedCount = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("ai.generation.stream.orphaned", orphanedCount, AtomicInteger::get)
+                .description("客户端已全部断开、仍在继续生成的任务数")
+                .register(meterRegistry);
+        Gauge.builder("ai.generation.stream.active", streams, Map::size)
+                .description("可接入的生成流数量（含刚结束、仍在保留期内的）")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动生成管道
+     * 发起请求的客户端订阅时才开始执行管道，之后管道的生命周期不再受客户端取消影响
+     *
+     * @param appId    应用 ID
+     * @param userId   用户 ID
+     * @param pipeline 完整的生成管道
+     * @return 发起请求的客户端接收的帧流
+     */
+    public Flux<StreamFrame> launch(Long appId, Long userId, Flux<StreamMessage> pipeline) {
+        GenerationStream stream = new GenerationStream(appId, userId, pipeline);
+        // 同一应用已有进行中的生成时保留原来的（新请求会因为生成租约被拒绝）
+        streams.compute(appId, (key, existing) -> existing == null || existing.isTerminated() ? stream : existing);
+        return Flux.create(sink -> stream.attach(sink, 0, true));
+    }
+
+    /**
+     * 接入应用进行中（或刚结束）的生成流，从指定事件之后开始补发
+     *
+     * @param appId       应用 ID
+     * @param lastEventId 客户端最后收到的事件 ID，为空或不属于当前生成流时从头补发
+     * @return 帧流
+     */
+    public Flux<StreamFrame> resume(Long appId, String lastEventId) {
+        GenerationStream stream = streams.get(appId);
+        if (stream == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "没有可接入的生成任务");
+        }
+        long lastSeq = stream.parseLastSeq(lastEventId);
+        return Flux.create(sink -> stream.attach(sink, lastSeq, false));
+    }
+
+    private void recordOrphaned(long orphanedAt, String outcome) {
+        Timer.builder("ai.generation.stream.orphaned.duration")
+                .description("生成任务无人接收的持续时间")
+                .tag("policy", generationStreamConfig.getOrphanPolicy().name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - orphanedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 一次生成的管道、最近的帧及其接收者
+     * <p>
+     * 帧的追加、补发和推送都在同一把锁内完成，保证每个接收者收到的帧连续且不重复
+     */
+    private final class GenerationStream {
+
+        private final String id = IdUtil.fastSimpleUUID();
+
+        private final Long appId;
+
+        private final Long userId;
+
+        private final Flux<StreamMessage> pipeline;
+
+        private final List<FluxSink<StreamFrame>> viewers = new ArrayList<>();
+
+        private final ArrayDeque<StreamFrame> frames = new ArrayDeque<>();
+
+        private long lastSeq;
+
+        private boolean started;
+
+        private boolean terminated;
+
+        /**
+         * 管道失败时的错误，补发给之后接入的客户端
+         */
+        private Throwable failure;
+
+        /**
+         * 开始无人接收的时间，0 表示有人接收
+         */
+        private long orphanedAt;
+
+        private volatile boolean aborted;
+
+        private volatile Disposable subscription;
+
+        private Disposable orphanTimeout;
+
+        private GenerationStream(Long appId, Long userId, Flux<StreamMessage> pipeline) {
+            this.appId = appId;
+            this.userId = userId;
+            this.pipeline = pipeline;
+        }
+
+        private synchronized boolean isTerminated() {
+            return terminated;
+        }
+
+        /**
+         * 解析客户端最后收到的序号
+         */
+        private long parseLastSeq(String lastEventId) {
+            if (StrUtil.isBlank(lastEventId)) {
+                return 0;
+            }
+            int separator = lastEventId.lastIndexOf('-');
+            if (separator <= 0 || !id.equals(lastEventId.substring(0, separator))) {
+                // 上一次生成的事件 ID，当前生成流需要从头接收
+                return 0;
+            }
+            try {
+                return Math.max(0, Long.parseLong(lastEventId.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * 接入接收者
+         *
+         * @param viewer   接收者
+         * @param afterSeq 从该序号之后开始补发
+         * @param owner    是否为发起生成的请求，由它启动管道
+         */
+        private void attach(FluxSink<StreamFrame> viewer, long afterSeq, boolean owner) {
+            boolean start;
+            long reattachedAt = 0;
+            synchronized (this) {
+                long firstRetained = frames.isEmpty() ? lastSeq + 1 : frames.peekFirst().seq();
+                if (afterSeq + 1 < firstRetained) {
+                    viewer.error(new BusinessException(ErrorCode.OPERATION_ERROR, "断开时间过长，无法续传，请刷新对话记录"));
+                    return;
+                }
+                for (StreamFrame frame : frames) {
+                    if (frame.seq() > afterSeq) {
+                        viewer.next(frame);
+                    }
+                }
+                if (terminated) {
+                    if (failure != null) {
+                        viewer.error(failure);
+                    } else {
+                        viewer.complete();
+                    }
+                    return;
+                }
+                viewers.add(viewer);
+                start = owner && !started;
+                started |= start;
+                if (!owner) {
+                    reattachedAt = endOrphan();
+                }
+            }
+            if (reattachedAt != 0) {
+                log.info("客户端重新接入生成任务: appId={}, userId={}", appId, userId);
+                recordOrphaned(reattachedAt, "reattached");
+            }
+            viewer.onCancel(() -> detach(viewer));
+            if (start) {
+                subscription = pipeline.subscribe(this::broadcast, this::fail, this::complete);
+                // 订阅过程中接收者已断开
+                if (aborted) {
+                    subscription.dispose();
+                }
+            }
+        }
+
+        private void detach(FluxSink<StreamFrame> viewer) {
+            synchronized (this) {
+                if (!viewers.remove(viewer) || !viewers.isEmpty() || !started || terminated) {
+                    return;
+                }
+                if (generationStreamConfig.getOrphanPolicy() == OrphanPolicy.CONTINUE) {
+                    orphanedAt = System.nanoTime();
+                    orphanedCount.incrementAndGet();
+                    orphanTimeout = Schedulers.parallel().schedule(this::expire,
+                            generationStreamConfig.getMaxOrphanTime().toMillis(), TimeUnit.MILLISECONDS);
+                    log.info("客户端已断开，继续生成: appId={}, userId={}", appId, userId);
+                    return;
+                }
+                // 之后重连的客户端收到中断错误，而不是正常结束
+                failure = new BusinessException(ErrorCode.OPERATION_ERROR, "客户端断开连接，生成已中断");
+                markTerminated();
+            }
+            log.info("客户端已断开，中止生成: appId={}, userId={}", appId, userId);
+            recordOrphaned(System.nanoTime(), "aborted");
+            abort();
+        }
+
+        /**
+         * 无人接收超过最长时间
+         */
+        private void expire() {
+            long since;
+            synchronized (this) {
+                if (terminated || orphanedAt == 0) {
+                    return;
+                }
+                failure = new BusinessException(ErrorCode.OPERATION_ERROR, "长时间无人接收，生成已中断");
+                markTerminated();
+                since = endOrphan();
+            }
+            log.warn("生成任务无人接收已超时，中止生成: appId={}, userId={}", appId, userId);
+            recordOrphaned(since, "timeout");
+            abort();
+        }
+
+        private void abort() {
+            aborted = true;
+            Disposable current = subscription;
+            if (current != null) {
+                current.dispose();
+            }
+        }
+
+        private synchronized void broadcast(StreamMessage message) {
+            StreamFrame frame = new StreamFrame(id, ++lastSeq, message);
+            frames.addLast(frame);
+            if (frames.size() > generationStreamConfig.getReplayBufferSize()) {
+                frames.pollFirst();
+            }
+            for (FluxSink<StreamFrame> viewer : viewers) {
+                viewer.next(frame);
+            }
+        }
+
+        private void complete() {
+            terminate(null);
+        }
+
+        private void fail(Throwable error) {
+            terminate(error);
+        }
+
+        private void terminate(Throwable error) {
+            long since;
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                failure = error;
+                markTerminated();
+                since = endOrphan();
+                for (FluxSink<StreamFrame> viewer : viewers) {
+                    if (error != null) {
+                        viewer.error(error);
+                    } else {
+                        viewer.complete();
+                    }
+                }
+                viewers.clear();
+            }
+            if (since != 0) {
+                String outcome = error == null ? "completed" : "failed";
+                log.info("无人接收的生成任务已结束: appId={}, outcome={}", appId, outcome);
+                recordOrphaned(since, outcome);
+            }
+        }
+
+        /**
+         * 标记结束，保留一段时间供重连的客户端补收后移除（在锁内调用）
+         */
+        private void markTerminated() {
+            terminated = true;
+            Schedulers.parallel().schedule(() -> streams.remove(appId, this),
+                    generationStreamConfig.getRetainAfterComplete().toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 结束无人接收状态（在锁内调用）
+         *
+         * @return 开始无人接收的时间，0 表示之前有人接收
+         */
+        private long endOrphan() {
+            long since = orphanedAt;
+            if (since != 0) {
+                orphanedAt = 0;
+                orphanedCount.decrementAndGet();
+                if (orphanTimeout != null) {
+                    orphanTimeout.dispose();
+                    orphanTimeout = null;
+                }
+            }
+            return since;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.easen.aicode.ai;
 
+import com.easen.aicode.ai.model.message.StreamMessage;
+import com.easen.aicode.core.buffer.GenerationBuffer;
 import com.easen.aicode.service.ChatHistoryService;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -13,7 +16,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 代码生成任务管理器
- * 用于管理正在进行的代码生成任务，支持取消操作
+ * 用于管理正在进行的代码生成任务，支持取消操作。
+ * 同一应用的互斥由集群级生成租约保证，任务在其他节点时取消请求会转发到对应节点执行
  */
 @Slf4j
 @Component
@@ -22,12 +26,32 @@ public class GenerationTaskManager {
     @Resource
     private ChatHistoryService chatHistoryService;
 
+    @Resource
+    private GenerationLeaseManager generationLeaseManager;
+
     /**
      * 存储正在进行的生成任务
      * key: appId, value: 任务信息
      */
     private final Map<Long, GenerationTask> activeTasks = new ConcurrentHashMap<>();
 
+    @PostConstruct
+    public void init() {
+        // 处理其他节点转发过来的取消请求
+        generationLeaseManager.onCancel(this::cancelLocalTask);
+    }
+
+    /**
+     * 尝试开始生成任务：原子地获取应用的生成租约
+     *
+     * @param appId  应用ID
+     * @param userId 用户ID
+     * @return 是否获取成功，失败说明该应用在某个节点上已有进行中的任务
+     */
+    public boolean tryStartTask(Long appId, Long userId) {
+        return generationLeaseManager.tryAcquire(appId, userId);
+    }
+
     /**
      * 注册新的生成任务
      *
@@ -36,9 +60,9 @@ public class GenerationTaskManager {
      * @param disposable 可取消的资源
      * @param sink 流式响应的sink
      * @param userId 用户ID
-     * @param partialContent 部分生成内容的收集器
+     * @param partialContent 本次生成的内容缓冲区
      */
-    public void registerTask(Long appId, String taskType, Disposable disposable, FluxSink<String> sink, Long userId, StringBuilder partialContent) {
+    public void registerTask(Long appId, String taskType, Disposable disposable, FluxSink<StreamMessage> sink, Long userId, GenerationBuffer partialContent) {
         GenerationTask task = new GenerationTask(appId, taskType, disposable, sink, userId, partialContent);
         activeTasks.put(appId, task);
         log.info("注册生成任务: appId={}, taskType={}, userId={}", appId, taskType, userId);
@@ -52,6 +76,27 @@ public class GenerationTaskManager {
      * @return 是否成功取消
      */
     public boolean cancelTask(Long appId, Long userId) {
+        if (activeTasks.containsKey(appId)) {
+            return cancelLocalTask(appId, userId);
+        }
+        // 任务不在本节点，转发给持有租约的节点
+        GenerationLeaseManager.LeaseOwner owner = generationLeaseManager.getOwner(appId);
+        if (owner != null && !owner.nodeId().equals(generationLeaseManager.getNodeId())) {
+            if (!owner.userId().equals(userId)) {
+                log.warn("用户无权限取消生成任务: appId={}, requestUserId={}, taskUserId={}", appId, userId, owner.userId());
+                return false;
+            }
+            generationLeaseManager.publishCancel(appId, userId, owner);
+            return true;
+        }
+        log.warn("未找到要取消的生成任务: appId={}, userId={}", appId, userId);
+        return false;
+    }
+
+    /**
+     * 取消本节点上的生成任务
+     */
+    private boolean cancelLocalTask(Long appId, Long userId) {
         GenerationTask task = activeTasks.get(appId);
         if (task != null) {
             // 验证用户权限：只有正在生成的用户才能取消
@@ -59,8 +104,9 @@ public class GenerationTaskManager {
                 log.warn("用户无权限取消生成任务: appId={}, requestUserId={}, taskUserId={}", appId, userId, task.userId);
                 return false;
             }
-            // 从任务列表中移除
+            // 从任务列表中移除，并释放生成租约
             activeTasks.remove(appId);
+            generationLeaseManager.release(appId);
             try {
                 // 取消流式响应
                 if (task.sink != null) {
@@ -73,7 +119,8 @@ public class GenerationTaskManager {
                 // 更新聊天记录状态为手动中断（状态值1）
                 chatHistoryService.updateChatHistoryStatus(appId, userId, 1);
                 
-                log.info("成功取消生成任务: appId={}, taskType={}, userId={}", appId, task.taskType, userId);
+                log.info("成功取消生成任务: appId={}, taskType={}, userId={}, generatedLength={}", appId, task.taskType, userId,
+                        task.partialContent != null ? task.partialContent.length() : 0);
                 return true;
             } catch (Exception e) {
                 log.error("取消生成任务时发生错误: appId={}, userId={}", appId, userId, e);
@@ -84,6 +131,26 @@ public class GenerationTaskManager {
         return false;
     }
 
+    /**
+     * 下游不再接收（生成管道被中止）时中止上游生成
+     * 只处理由该 sink 注册的任务，避免误伤同一应用后续的新任务
+     *
+     * @param appId 应用ID
+     * @param sink  注册任务时的 sink
+     */
+    public void abortTask(Long appId, FluxSink<StreamMessage> sink) {
+        GenerationTask task = activeTasks.get(appId);
+        if (task == null || task.sink != sink || !activeTasks.remove(appId, task)) {
+            return;
+        }
+        generationLeaseManager.release(appId);
+        if (task.disposable != null && !task.disposable.isDisposed()) {
+            task.disposable.dispose();
+        }
+        log.info("中止生成任务: appId={}, taskType={}, userId={}, generatedLength={}", appId, task.taskType, task.userId,
+                task.partialContent != null ? task.partialContent.length() : 0);
+    }
+
     /**
      * 完成任务并清理资源
      *
@@ -91,19 +158,20 @@ public class GenerationTaskManager {
      */
     public void completeTask(Long appId) {
         GenerationTask task = activeTasks.remove(appId);
+        generationLeaseManager.release(appId);
         if (task != null) {
             log.info("完成生成任务: appId={}, taskType={}, userId={}", appId, task.taskType, task.userId);
         }
     }
 
     /**
-     * 检查是否有正在进行的任务
+     * 检查是否有正在进行的任务（包括其他节点）
      *
      * @param appId 应用ID
      * @return 是否有正在进行的任务
      */
     public boolean hasActiveTask(Long appId) {
-        return activeTasks.containsKey(appId);
+        return activeTasks.containsKey(appId) || generationLeaseManager.getOwner(appId) != null;
     }
 
     /**
@@ -123,7 +191,11 @@ public class GenerationTaskManager {
      */
     public Long getTaskUserId(Long appId) {
         GenerationTask task = activeTasks.get(appId);
-        return task != null ? task.userId : null;
+        if (task != null) {
+            return task.userId;
+        }
+        GenerationLeaseManager.LeaseOwner owner = generationLeaseManager.getOwner(appId);
+        return owner != null ? owner.userId() : null;
     }
 
     /**
@@ -133,12 +205,12 @@ public class GenerationTaskManager {
         private final Long appId;
         private final String taskType;
         private final Disposable disposable;
-        private final FluxSink<String> sink;
+        private final FluxSink<StreamMessage> sink;
         private final Long userId;
-        private final StringBuilder partialContent;
+        private final GenerationBuffer partialContent;
         private final long startTime;
 
-        public GenerationTask(Long appId, String taskType, Disposable disposable, FluxSink<String> sink, Long userId, StringBuilder partialContent) {
+        public GenerationTask(Long appId, String taskType, Disposable disposable, FluxSink<StreamMessage> sink, Long userId, GenerationBuffer partialContent) {
             this.appId = appId;
             this.taskType = taskType;
             this.disposable = disposable;
@@ -0,0 +1,85 @@
+package com.easen.aicode.ai.memory;
+
+import cn.hutool.core.util.NumberUtil;
+import com.easen.aicode.utils.RedisKeyUtil;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 对话记忆水位线管理
+ * 水位线记录 Redis 记忆已经包含的最新一条对话历史 ID，与数据库最新 ID 一致时说明 Redis 记忆是最新的，无需重新加载。
+ * 水位线只在确认记忆与数据库一致时写入，任何可能造成不一致的操作（中断、取消、删除）都会直接删除水位线，
+ * 下次构建服务时回退为从数据库重新加载
+ */
+@Slf4j
+@Component
+public class ChatMemoryWatermarkManager {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 与 Redis 记忆保持相同的过期时间（秒）
+     */
+    @Value("${spring.data.redis.ttl:3600}")
+    private long ttlSeconds;
+
+    /**
+     * 判断记忆水位线是否等于最新对话历史 ID
+     *
+     * @param appId    应用 ID
+     * @param latestId 数据库中最新的对话历史 ID
+     */
+    public boolean isCurrent(Long appId, Long latestId) {
+        if (latestId == null) {
+            return false;
+        }
+        try {
+            String value = stringRedisTemplate.opsForValue().get(RedisKeyUtil.getChatMemoryWatermarkKey(appId));
+            return NumberUtil.isLong(value) && Long.parseLong(value) == latestId;
+        } catch (Exception e) {
+            log.warn("读取记忆水位线失败，appId: {}", appId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 记忆从数据库完整加载后写入水位线
+     */
+    public void set(Long appId, Long latestId) {
+        try {
+            stringRedisTemplate.opsForValue().set(RedisKeyUtil.getChatMemoryWatermarkKey(appId),
+                    String.valueOf(latestId), Duration.ofSeconds(ttlSeconds));
+        } catch (Exception e) {
+            log.warn("写入记忆水位线失败，appId: {}", appId, e);
+        }
+    }
+
+    /**
+     * 正常对话写入后推进水位线，水位线不存在（记忆状态未知）时不写入
+     */
+    public void advanceIfPresent(Long appId, Long latestId) {
+        try {
+            stringRedisTemplate.opsForValue().setIfPresent(RedisKeyUtil.getChatMemoryWatermarkKey(appId),
+                    String.valueOf(latestId), Duration.ofSeconds(ttlSeconds));
+        } catch (Exception e) {
+            log.warn("推进记忆水位线失败，appId: {}", appId, e);
+        }
+    }
+
+    /**
+     * 删除水位线，下次构建服务时从数据库重新加载记忆
+     */
+    public void invalidate(Long appId) {
+        try {
+            stringRedisTemplate.delete(RedisKeyUtil.getChatMemoryWatermarkKey(appId));
+        } catch (Exception e) {
+            log.warn("删除记忆水位线失败，appId: {}", appId, e);
+        }
+    }
+}
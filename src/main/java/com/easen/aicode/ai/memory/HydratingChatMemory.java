@@ -0,0 +1,121 @@
+package com.easen.aicode.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.memory.ChatMemory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 延迟加载历史的对话记忆
+ * 历史消息在独立线程池中从数据库查询，构建 AI 服务时不需要等待；
+ * 第一次读写记忆时才把查询结果写入底层记忆，且只写一次，之后不会再覆盖新产生的消息。
+ * 查询结果为 null 表示底层记忆已是最新，无需写入
+ */
+@Slf4j
+public class HydratingChatMemory implements ChatMemory {
+
+    private final ChatMemory delegate;
+
+    private final CompletableFuture<List<ChatMessage>> historyFuture;
+
+    private final Duration waitTimeout;
+
+    private final Runnable onHydrated;
+
+    private volatile boolean hydrated;
+
+    /**
+     * @param delegate      实际存储消息的记忆
+     * @param historyFuture 异步加载的历史消息（按时间正序），为 null 表示无需加载
+     * @param waitTimeout   首次访问时的最长等待时间
+     * @param onHydrated    历史成功写入记忆后的回调，可为空
+     */
+    public HydratingChatMemory(ChatMemory delegate, CompletableFuture<List<ChatMessage>> historyFuture,
+                               Duration waitTimeout, Runnable onHydrated) {
+        this.delegate = delegate;
+        this.historyFuture = historyFuture;
+        this.waitTimeout = waitTimeout;
+        this.onHydrated = onHydrated;
+    }
+
+    @Override
+    public Object id() {
+        return delegate.id();
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        ensureHydrated();
+        delegate.add(message);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        ensureHydrated();
+        return delegate.messages();
+    }
+
+    @Override
+    public void clear() {
+        ensureHydrated();
+        delegate.clear();
+    }
+
+    /**
+     * 历史查询完成后立即写入记忆（用于预热），不占用查询线程
+     *
+     * @param executor 执行写入的线程池
+     * @return 写入完成的 future
+     */
+    public CompletableFuture<Void> hydrateAsync(Executor executor) {
+        return historyFuture.handleAsync((history, error) -> {
+            ensureHydrated();
+            return null;
+        }, executor);
+    }
+
+    /**
+     * 历史是否已经写入记忆
+     */
+    public boolean isHydrated() {
+        return hydrated;
+    }
+
+    private void ensureHydrated() {
+        if (hydrated) {
+            return;
+        }
+        synchronized (this) {
+            if (hydrated) {
+                return;
+            }
+            try {
+                List<ChatMessage> history = historyFuture.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                if (history != null && !history.isEmpty()) {
+                    // 清理已有缓存，防止重复加载
+                    delegate.clear();
+                    history.forEach(delegate::add);
+                    if (onHydrated != null) {
+                        onHydrated.run();
+                    }
+                }
+            } catch (TimeoutException e) {
+                // 加载过慢时直接使用 Redis 中已有的记忆，之后也不再写入，避免覆盖新消息
+                log.warn("等待历史记忆加载超时，跳过加载，memoryId: {}", delegate.id());
+            } catch (ExecutionException e) {
+                log.error("加载历史记忆失败，memoryId: {}", delegate.id(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                hydrated = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.easen.aicode.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按 token 预算裁剪的对话记忆
+ * <ul>
+ *     <li>最近若干条消息原样保留</li>
+ *     <li>更早的消息中的代码块、工具参数和工具结果替换为摘要（语言/文件、长度、内容哈希）</li>
+ *     <li>摘要后仍超出 token 上限时，从最早的消息开始淘汰（系统消息始终保留）</li>
+ * </ul>
+ * 生成的代码已经落盘，历史轮次只需要让模型知道"改过哪些文件"，不需要每轮重复发送完整代码
+ */
+@Slf4j
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    /**
+     * 匹配 markdown 代码块
+     */
+    private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```([\\w.+-]*)[^\\n]*\\n(.*?)(?:```|$)", Pattern.DOTALL);
+
+    /**
+     * 超过该长度的工具参数值和工具结果才做摘要
+     */
+    private static final int DIGEST_MIN_LENGTH = 200;
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final int maxTokens;
+
+    private final int maxMessages;
+
+    private final int keepRecentMessages;
+
+    /**
+     * @param id                 记忆 ID
+     * @param chatMemoryStore    消息存储
+     * @param maxTokens          token 上限
+     * @param maxMessages        消息条数上限，兜底防止大量短消息堆积
+     * @param keepRecentMessages 原样保留的最近消息数
+     */
+    @Builder
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore chatMemoryStore, int maxTokens,
+                                 int maxMessages, int keepRecentMessages) {
+        this.id = id;
+        this.store = chatMemoryStore;
+        this.maxTokens = maxTokens;
+        this.maxMessages = maxMessages;
+        this.keepRecentMessages = keepRecentMessages;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            SystemMessage existing = findSystemMessage(messages);
+            if (existing != null) {
+                if (existing.equals(message)) {
+                    // 相同的系统消息不重复添加
+                    return;
+                }
+                messages.remove(existing);
+            }
+        }
+        messages.add(message);
+        compact(messages);
+        evict(messages);
+        store.updateMessages(id, messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 对最近消息之外的消息做摘要
+     */
+    private void compact(List<ChatMessage> messages) {
+        int end = messages.size() - keepRecentMessages;
+        for (int i = 0; i < end; i++) {
+            ChatMessage digested = digest(messages.get(i));
+            if (digested != null) {
+                messages.set(i, digested);
+            }
+        }
+    }
+
+    /**
+     * 超出预算时从最早的非系统消息开始淘汰
+     */
+    private void evict(List<ChatMessage> messages) {
+        int totalTokens = 0;
+        for (ChatMessage message : messages) {
+            totalTokens += estimateTokens(message);
+        }
+        int evicted = 0;
+        while (countNonSystem(messages) > 1 && (totalTokens > maxTokens || messages.size() > maxMessages)) {
+            int index = firstNonSystemIndex(messages);
+            ChatMessage removed = messages.remove(index);
+            totalTokens -= estimateTokens(removed);
+            evicted++;
+            // 工具调用请求被淘汰后，对应的工具结果也要一起淘汰，否则模型接口会报错
+            if (removed instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                while (index < messages.size() && messages.get(index) instanceof ToolExecutionResultMessage) {
+                    totalTokens -= estimateTokens(messages.remove(index));
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.debug("对话记忆超出预算，淘汰 {} 条消息，memoryId: {}, 剩余 tokens: {}", evicted, id, totalTokens);
+        }
+    }
+
+    /**
+     * 生成消息摘要
+     *
+     * @return 摘要后的消息，无需摘要时返回 null
+     */
+    static ChatMessage digest(ChatMessage message) {
+        switch (message) {
+            case AiMessage aiMessage -> {
+                String text = aiMessage.text();
+                String digestedText = text == null ? null : digestCodeBlocks(text);
+                boolean textChanged = text != null && !text.equals(digestedText);
+                if (!aiMessage.hasToolExecutionRequests()) {
+                    return textChanged ? AiMessage.from(digestedText) : null;
+                }
+                List<ToolExecutionRequest> requests = new ArrayList<>();
+                boolean requestChanged = false;
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    String arguments = digestArguments(request.arguments());
+                    requestChanged |= !arguments.equals(request.arguments());
+                    requests.add(ToolExecutionRequest.builder()
+                            .id(request.id())
+                            .name(request.name())
+                            .arguments(arguments)
+                            .build());
+                }
+                if (!textChanged && !requestChanged) {
+                    return null;
+                }
+                return StrUtil.isEmpty(digestedText)
+                        ? AiMessage.from(requests)
+                        : AiMessage.from(digestedText, requests);
+            }
+            case ToolExecutionResultMessage resultMessage -> {
+                String text = resultMessage.text();
+                if (text == null || text.length() <= DIGEST_MIN_LENGTH) {
+                    return null;
+                }
+                return ToolExecutionResultMessage.from(resultMessage.id(), resultMessage.toolName(),
+                        describe("工具结果", text));
+            }
+            default -> {
+                // 用户消息保留原文，里面是需求描述
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 把文本中的代码块替换为一行摘要
+     */
+    static String digestCodeBlocks(String text) {
+        Matcher matcher = CODE_BLOCK_PATTERN.matcher(text);
+        StringBuilder result = new StringBuilder();
+        boolean found = false;
+        while (matcher.find()) {
+            found = true;
+            String language = StrUtil.blankToDefault(matcher.group(1), "text");
+            matcher.appendReplacement(result, Matcher.quoteReplacement(describe(language, matcher.group(2))));
+        }
+        if (!found) {
+            return text;
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * 把工具参数中较长的字符串值（如写入的文件内容）替换为摘要，保留文件路径等短参数
+     */
+    private static String digestArguments(String arguments) {
+        if (arguments == null || arguments.length() <= DIGEST_MIN_LENGTH || !JSONUtil.isTypeJSONObject(arguments)) {
+            return arguments;
+        }
+        JSONObject json = JSONUtil.parseObj(arguments);
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : json.entrySet()) {
+            if (entry.getValue() instanceof String value && value.length() > DIGEST_MIN_LENGTH) {
+                entry.setValue(describe(entry.getKey(), value));
+                changed = true;
+            }
+        }
+        return changed ? json.toString() : arguments;
+    }
+
+    private static String describe(String name, String content) {
+        return String.format("[已省略 %s: %d 字符, sha256:%s]", name, content.length(),
+                DigestUtil.sha256Hex(content).substring(0, 12));
+    }
+
+    /**
+     * 估算消息的 token 数
+     * 不依赖具体模型的分词器：CJK 字符按 1 个 token 计，其余字符按 4 个字符 1 个 token 计，
+     * 对代码和中英文混合的对话误差在可接受范围内
+     */
+    static int estimateTokens(ChatMessage message) {
+        // 每条消息的角色、分隔符等固定开销
+        int tokens = 4;
+        switch (message) {
+            case SystemMessage systemMessage -> tokens += estimateTokens(systemMessage.text());
+            case UserMessage userMessage -> {
+                for (Content content : userMessage.contents()) {
+                    // 图片等非文本内容按固定开销估算
+                    tokens += content instanceof TextContent textContent ? estimateTokens(textContent.text()) : 85;
+                }
+            }
+            case AiMessage aiMessage -> {
+                tokens += estimateTokens(aiMessage.text());
+                if (aiMessage.hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                        tokens += estimateTokens(request.name()) + estimateTokens(request.arguments());
+                    }
+                }
+            }
+            case ToolExecutionResultMessage resultMessage -> tokens += estimateTokens(resultMessage.text());
+            default -> {
+            }
+        }
+        return tokens;
+    }
+
+    static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.UnicodeScript.of(text.charAt(i)) == Character.UnicodeScript.HAN) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    private static SystemMessage findSystemMessage(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                return systemMessage;
+            }
+        }
+        return null;
+    }
+
+    private static int countNonSystem(List<ChatMessage> messages) {
+        int count = 0;
+        for (ChatMessage message : messages) {
+            if (!(message instanceof SystemMessage)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int firstNonSystemIndex(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (!(messages.get(i) instanceof SystemMessage)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
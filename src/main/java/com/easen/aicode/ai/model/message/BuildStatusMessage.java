@@ -0,0 +1,37 @@
+package com.easen.aicode.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 构建状态消息
+ * Vue 项目生成完成后进入构建阶段，开始和结束时推送给前端
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+@NoArgsConstructor
+public class BuildStatusMessage extends StreamMessage {
+
+    public static final String BUILDING = "building";
+
+    public static final String SUCCESS = "success";
+
+    public static final String FAILED = "failed";
+
+    /**
+     * 构建状态：building / success / failed
+     */
+    private String status;
+
+    /**
+     * 构建耗时（毫秒，含排队时间），构建中为 0
+     */
+    private long durationMillis;
+
+    public BuildStatusMessage(String status, long durationMillis) {
+        super(StreamMessageTypeEnum.BUILD.getValue());
+        this.status = status;
+        this.durationMillis = durationMillis;
+    }
+}
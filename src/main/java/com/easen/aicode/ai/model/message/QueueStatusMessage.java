@@ -0,0 +1,37 @@
+package com.easen.aicode.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 排队状态消息
+ * 生成请求等待执行名额时推送给前端，排队位置变化时更新
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+@NoArgsConstructor
+public class QueueStatusMessage extends StreamMessage {
+
+    /**
+     * 预计排在第几位（从 1 开始）
+     */
+    private int position;
+
+    /**
+     * 当前排队总数
+     */
+    private int queueLength;
+
+    /**
+     * 已等待的毫秒数
+     */
+    private long waitedMillis;
+
+    public QueueStatusMessage(int position, int queueLength, long waitedMillis) {
+        super(StreamMessageTypeEnum.QUEUE.getValue());
+        this.position = position;
+        this.queueLength = queueLength;
+        this.waitedMillis = waitedMillis;
+    }
+}
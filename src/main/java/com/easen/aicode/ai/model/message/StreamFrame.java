@@ -0,0 +1,19 @@
+package com.easen.aicode.ai.model.message;
+
+/**
+ * 带序号的流式消息帧
+ * SSE 事件 ID 为 "生成流ID-序号"，客户端重连时通过 Last-Event-ID 从断开的位置继续接收
+ *
+ * @param streamId 生成流 ID，区分同一应用的不同次生成
+ * @param seq      帧序号，从 1 开始连续递增
+ * @param message  消息
+ */
+public record StreamFrame(String streamId, long seq, StreamMessage message) {
+
+    /**
+     * SSE 事件 ID
+     */
+    public String eventId() {
+        return streamId + "-" + seq;
+    }
+}
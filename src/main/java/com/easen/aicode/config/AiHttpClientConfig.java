@@ -0,0 +1,116 @@
+package com.easen.aicode.config;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * AI 模型共享 HTTP 客户端配置
+ * 所有流式模型共用同一个 JDK HttpClient（HTTP/2 多路复用 + 连接池长连接），
+ * 避免每个模型实例各自维护一套连接池
+ */
+@Slf4j
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.http-client")
+@Data
+public class AiHttpClientConfig {
+
+    /**
+     * 连接超时
+     */
+    private Duration connectTimeout = Duration.ofSeconds(15);
+
+    /**
+     * 读取超时（流式请求为等待响应的超时时间）
+     */
+    private Duration readTimeout = Duration.ofMinutes(5);
+
+    /**
+     * 是否优先使用 HTTP/2（服务端不支持时自动降级为 HTTP/1.1）
+     */
+    private boolean http2 = true;
+
+    /**
+     * 连接池最多保持的空闲长连接数（所有目标主机合计，HTTP/1.1 生效，0 表示不限制）
+     * 对应系统属性 jdk.httpclient.connectionPoolSize，由 {@link AiHttpClientEnvironmentPostProcessor} 在启动时设置
+     */
+    private int maxIdleConnections = 64;
+
+    /**
+     * 空闲长连接保持时间（秒）
+     * 对应系统属性 jdk.httpclient.keepalive.timeout，由 {@link AiHttpClientEnvironmentPostProcessor} 在启动时设置
+     */
+    private int keepAliveSeconds = 300;
+
+    /**
+     * 共享的 HTTP 客户端构建器，传给模型的 httpClientBuilder
+     */
+    @Bean
+    public HttpClientBuilder aiHttpClientBuilder() {
+        java.net.http.HttpClient.Builder jdkBuilder = java.net.http.HttpClient.newBuilder()
+                .version(http2 ? java.net.http.HttpClient.Version.HTTP_2 : java.net.http.HttpClient.Version.HTTP_1_1)
+                .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+                // 响应回调在虚拟线程上执行，不占用公共线程池
+                .executor(Executors.newVirtualThreadPerTaskExecutor());
+        JdkHttpClient sharedClient = JdkHttpClient.builder()
+                .httpClientBuilder(jdkBuilder)
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .build();
+        log.info("初始化 AI 共享 HTTP 客户端: http2={}, connectionPoolSize={}, keepAliveTimeout={}", http2,
+                System.getProperty("jdk.httpclient.connectionPoolSize"), System.getProperty("jdk.httpclient.keepalive.timeout"));
+        return new SharedHttpClientBuilder(sharedClient, connectTimeout, readTimeout);
+    }
+
+    /**
+     * 始终返回同一个客户端实例的构建器
+     * 模型构建时传入的超时设置会被忽略，统一以共享客户端的配置为准
+     */
+    private static class SharedHttpClientBuilder implements HttpClientBuilder {
+
+        private final HttpClient sharedClient;
+
+        private final Duration connectTimeout;
+
+        private final Duration readTimeout;
+
+        SharedHttpClientBuilder(HttpClient sharedClient, Duration connectTimeout, Duration readTimeout) {
+            this.sharedClient = sharedClient;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+        }
+
+        @Override
+        public Duration connectTimeout() {
+            return connectTimeout;
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return readTimeout;
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return sharedClient;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.easen.aicode.config;
+
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+/**
+ * JDK HttpClient 连接池参数
+ * <p>
+ * 连接池参数只能通过系统属性设置，并且在 JDK 内部类首次加载时读取一次，之后修改不再生效，
+ * 因此在配置文件加载完成后、Spring 容器创建任何 Bean 之前设置。
+ * 已通过 JVM 参数（-Djdk.httpclient.xxx）设置的值优先
+ */
+public class AiHttpClientEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered {
+
+    private static final String CONNECTION_POOL_SIZE = "jdk.httpclient.connectionPoolSize";
+
+    private static final String KEEP_ALIVE_TIMEOUT = "jdk.httpclient.keepalive.timeout";
+
+    private final Log log;
+
+    public AiHttpClientEnvironmentPostProcessor(DeferredLogFactory logFactory) {
+        this.log = logFactory.getLog(AiHttpClientEnvironmentPostProcessor.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        AiHttpClientConfig config = Binder.get(environment)
+                .bind("ai-code.http-client", AiHttpClientConfig.class)
+                .orElseGet(AiHttpClientConfig::new);
+        setPropertyIfAbsent(CONNECTION_POOL_SIZE, String.valueOf(config.getMaxIdleConnections()));
+        setPropertyIfAbsent(KEEP_ALIVE_TIMEOUT, String.valueOf(config.getKeepAliveSeconds()));
+    }
+
+    private void setPropertyIfAbsent(String key, String value) {
+        String existing = System.getProperty(key);
+        if (existing == null) {
+            System.setProperty(key, value);
+        } else if (!existing.equals(value)) {
+            log.info("系统属性 " + key + " 已设置为 " + existing + "，忽略配置值 " + value);
+        }
+    }
+
+    /**
+     * 在配置文件（ConfigDataEnvironmentPostProcessor）加载之后执行
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
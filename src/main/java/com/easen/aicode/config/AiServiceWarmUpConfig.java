@@ -0,0 +1,36 @@
+package com.easen.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * AI 服务启动预热配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.warm-up")
+@Data
+public class AiServiceWarmUpConfig {
+
+    /**
+     * 是否开启启动预热
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最多预热的应用数
+     */
+    private int maxApps = 200;
+
+    /**
+     * 只预热该时间范围内有过对话的应用
+     */
+    private Duration lookback = Duration.ofDays(3);
+
+    /**
+     * 预热的时间预算，超出后不再阻塞启动，剩余应用在后台继续预热
+     */
+    private Duration timeBudget = Duration.ofSeconds(30);
+}
@@ -0,0 +1,56 @@
+package com.easen.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 对话历史写入配置（异步批量写入、大内容转存）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.chat-history.write-behind")
+@Data
+public class ChatHistoryWriteConfig {
+
+    /**
+     * 是否开启异步批量写入，关闭后每条消息同步写库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 待写入队列容量，队列满时退化为同步写入
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 单批最多写入的行数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 攒批的最长等待时间
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * 写入失败后首次重试的间隔，之后每次翻倍
+     */
+    private Duration retryInitialInterval = Duration.ofSeconds(1);
+
+    /**
+     * 写入失败后重试的最大间隔
+     */
+    private Duration retryMaxInterval = Duration.ofMinutes(1);
+
+    /**
+     * 超过该字符数的消息压缩转存到 chat_history_blob，0 表示不转存
+     */
+    private int offloadThreshold = 8192;
+
+    /**
+     * 转存后在对话历史表中保留的预览字符数
+     */
+    private int previewLength = 512;
+}
@@ -0,0 +1,60 @@
+package com.easen.aicode.config;
+
+import com.easen.aicode.model.enums.CodeGenTypeEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 对话记忆配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.chat-memory")
+@Data
+public class ChatMemoryConfig {
+
+    /**
+     * 记忆保留的最大消息数，同时也是从数据库加载的最大条数
+     */
+    private int maxMessages = 20;
+
+    /**
+     * 原样保留的最近消息数，更早消息中的代码和工具内容会被替换为摘要
+     */
+    private int keepRecentMessages = 4;
+
+    /**
+     * 未单独配置的代码生成类型使用的 token 上限
+     */
+    private int defaultMaxTokens = 16000;
+
+    /**
+     * 各代码生成类型的 token 上限（Vue 工程包含工具调用记录，预算更高）
+     */
+    private Map<CodeGenTypeEnum, Integer> maxTokens = new EnumMap<>(Map.of(
+            CodeGenTypeEnum.HTML, 16000,
+            CodeGenTypeEnum.MULTI_FILE, 24000,
+            CodeGenTypeEnum.VUE_PROJECT, 48000
+    ));
+
+    /**
+     * 同时从数据库加载历史记忆的最大并发数
+     */
+    private int hydrationConcurrency = 8;
+
+    /**
+     * 首次使用记忆时等待历史加载完成的最长时间，超时后不再等待，直接使用 Redis 中已有的记忆
+     */
+    private Duration hydrationWaitTimeout = Duration.ofSeconds(5);
+
+    /**
+     * 获取代码生成类型对应的 token 上限
+     */
+    public int resolveMaxTokens(CodeGenTypeEnum codeGenType) {
+        return maxTokens.getOrDefault(codeGenType, defaultMaxTokens);
+    }
+}
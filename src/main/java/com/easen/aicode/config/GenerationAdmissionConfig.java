@@ -0,0 +1,60 @@
+package com.easen.aicode.config;
+
+import com.easen.aicode.model.enums.CodeGenTypeEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 代码生成准入控制配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.generation.admission")
+@Data
+public class GenerationAdmissionConfig {
+
+    /**
+     * 是否开启准入控制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单节点同时进行的生成任务上限
+     */
+    private int maxConcurrent = 32;
+
+    /**
+     * 各代码生成类型同时进行的任务上限（Vue 工程包含工具调用和 npm 构建，开销远大于单文件）
+     */
+    private Map<CodeGenTypeEnum, Integer> maxConcurrentPerType = new EnumMap<>(Map.of(
+            CodeGenTypeEnum.HTML, 24,
+            CodeGenTypeEnum.MULTI_FILE, 16,
+            CodeGenTypeEnum.VUE_PROJECT, 4
+    ));
+
+    /**
+     * 排队总数上限，超出后直接拒绝
+     */
+    private int maxQueueSize = 200;
+
+    /**
+     * 单个用户最多同时排队的请求数
+     */
+    private int maxQueuedPerUser = 2;
+
+    /**
+     * 最长排队时间，超时后返回错误
+     */
+    private Duration maxWait = Duration.ofSeconds(60);
+
+    /**
+     * 获取代码生成类型的并发上限，未配置时只受节点总上限限制
+     */
+    public int resolveMaxConcurrent(CodeGenTypeEnum codeGenType) {
+        return maxConcurrentPerType.getOrDefault(codeGenType, maxConcurrent);
+    }
+}
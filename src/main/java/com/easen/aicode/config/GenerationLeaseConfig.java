@@ -0,0 +1,26 @@
+package com.easen.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 代码生成租约配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.generation.lease")
+@Data
+public class GenerationLeaseConfig {
+
+    /**
+     * 租约有效期，节点宕机后最多经过该时间租约自动释放
+     */
+    private Duration leaseTime = Duration.ofSeconds(60);
+
+    /**
+     * 续期间隔，需明显小于租约有效期
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(20);
+}
@@ -0,0 +1,53 @@
+package com.easen.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 生成流配置（客户端断开后的处理策略、断线续传）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.generation.stream")
+@Data
+public class GenerationStreamConfig {
+
+    /**
+     * 所有客户端都断开后的处理策略
+     * 断线续传依赖 CONTINUE：ABORT 策略下断开即中止，重连只能收到已生成的部分和中断错误
+     */
+    private OrphanPolicy orphanPolicy = OrphanPolicy.CONTINUE;
+
+    /**
+     * CONTINUE 策略下无人接收时最长继续生成的时间，超时后中止（覆盖 EventSource 自动重连的间隔即可）
+     */
+    private Duration maxOrphanTime = Duration.ofMinutes(1);
+
+    /**
+     * 每个生成流保留的最近帧数，客户端重连时从中补发
+     */
+    private int replayBufferSize = 4096;
+
+    /**
+     * 生成结束后继续保留的时间，期间重连的客户端仍可补收结尾部分
+     */
+    private Duration retainAfterComplete = Duration.ofSeconds(60);
+
+    /**
+     * 无人接收的生成流处理策略
+     */
+    public enum OrphanPolicy {
+
+        /**
+         * 立即中止上游生成，已生成的内容按中断保存
+         */
+        ABORT,
+
+        /**
+         * 继续生成直到完成，结果照常落盘和保存对话历史，供之后查看
+         */
+        CONTINUE
+    }
+}
@@ -1,12 +1,13 @@
 package com.easen.aicode.config;
 
+import dev.langchain4j.http.client.HttpClientBuilder;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Scope;
 
 @Configuration
 @ConfigurationProperties(prefix = "langchain4j.open-ai.reasoning-streaming-chat-model")
@@ -27,10 +28,13 @@ public class ReasoningStreamingChatModelConfig {
 
     private Boolean logResponses = false;
 
+    /**
+     * 推理流式模型（VUE_PROJECT），所有应用共享
+     */
     @Bean
-    @Scope("prototype")
-    public StreamingChatModel reasoningStreamingChatModelPrototype() {
+    public StreamingChatModel reasoningStreamingChatModel(@Qualifier("aiHttpClientBuilder") HttpClientBuilder aiHttpClientBuilder) {
         return OpenAiStreamingChatModel.builder()
+                .httpClientBuilder(aiHttpClientBuilder)
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
                 .modelName(modelName)
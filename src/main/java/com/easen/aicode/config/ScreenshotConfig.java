@@ -0,0 +1,129 @@
+package com.easen.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 网页截图浏览器池配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.screenshot")
+@Data
+public class ScreenshotConfig {
+
+    /**
+     * 单节点最多同时运行的浏览器数（每个无头浏览器占用数百 MB 内存）
+     */
+    private int maxBrowsers = 2;
+
+    /**
+     * 空闲时至少保留的浏览器数，0 表示按需启动
+     */
+    private int minIdle = 0;
+
+    /**
+     * 等待浏览器的截图任务数上限，超出后直接拒绝
+     */
+    private int maxWaiting = 20;
+
+    /**
+     * 等待空闲浏览器的最长时间
+     */
+    private Duration borrowTimeout = Duration.ofSeconds(60);
+
+    /**
+     * 单个浏览器最多使用次数，达到后关闭并重新启动，避免内存泄漏累积
+     */
+    private int maxUsesPerBrowser = 50;
+
+    /**
+     * 浏览器空闲超过该时间后关闭（仍保留 minIdle 个）
+     */
+    private Duration maxIdleTime = Duration.ofMinutes(10);
+
+    /**
+     * 页面加载超时时间
+     */
+    private Duration pageLoadTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 截图前等待页面就绪的条件，全部满足后立即截图
+     */
+    private List<ReadinessType> readiness = List.of(ReadinessType.NETWORK_IDLE, ReadinessType.RESOURCES, ReadinessType.APP_SIGNAL);
+
+    /**
+     * 等待页面就绪的最长时间，超时后直接截图
+     */
+    private Duration readinessTimeout = Duration.ofSeconds(10);
+
+    /**
+     * 没有新的网络请求持续该时间后认为网络空闲
+     */
+    private Duration networkIdleTime = Duration.ofMillis(300);
+
+    /**
+     * 浏览器窗口宽度
+     */
+    private int windowWidth = 1600;
+
+    /**
+     * 浏览器窗口高度
+     */
+    private int windowHeight = 900;
+
+    /**
+     * 封面最大宽度，截图超过该宽度时等比缩小
+     */
+    private int coverMaxWidth = 1200;
+
+    /**
+     * 封面目标大小，超过时逐步降低 JPEG 质量（不低于 minQuality）
+     */
+    private DataSize coverTargetSize = DataSize.ofKilobytes(150);
+
+    /**
+     * JPEG 初始质量
+     */
+    private float quality = 0.8f;
+
+    /**
+     * JPEG 最低质量
+     */
+    private float minQuality = 0.4f;
+
+    /**
+     * 列表页使用的缩略图宽度，可配置多个，最小的一个作为应用列表的封面缩略图
+     */
+    private List<Integer> thumbnailWidths = List.of(400);
+
+    /**
+     * 部署内容指纹与封面对应关系的保留时间，内容不变时在此期间重新部署不再截图
+     */
+    private Duration coverCacheTtl = Duration.ofDays(30);
+
+    /**
+     * 页面就绪条件
+     */
+    public enum ReadinessType {
+
+        /**
+         * 网络空闲：一段时间内没有新的资源请求完成
+         */
+        NETWORK_IDLE,
+
+        /**
+         * 图片和字体加载完成
+         */
+        RESOURCES,
+
+        /**
+         * 应用主动声明就绪（页面将 window.__APP_READY__ 置为 false 表示需要等待，置为 true 表示就绪）
+         */
+        APP_SIGNAL
+    }
+}
@@ -0,0 +1,30 @@
+package com.easen.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 流式输出合并配置
+ * 模型返回的片段通常只有一两个 token，合并后再推送可以显著减少 SSE 帧数
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.stream.coalesce")
+@Data
+public class StreamCoalesceConfig {
+
+    /**
+     * 是否开启合并
+     */
+    private boolean enabled = true;
+
+    /**
+     * 合并时间窗口（毫秒），首个片段到达后最多等待这么久就推送
+     */
+    private long intervalMs = 40;
+
+    /**
+     * 单帧最大字符数，达到后立即推送
+     */
+    private int maxFrameChars = 2048;
+}
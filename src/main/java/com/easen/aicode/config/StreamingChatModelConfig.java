@@ -1,12 +1,13 @@
 package com.easen.aicode.config;
 
+import dev.langchain4j.http.client.HttpClientBuilder;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Scope;
 
 @Configuration
 @ConfigurationProperties(prefix = "langchain4j.open-ai.streaming-chat-model")
@@ -27,10 +28,14 @@ public class StreamingChatModelConfig {
 
     private boolean logResponses;
 
+    /**
+     * 普通流式模型（HTML / MULTI_FILE）
+     * 单例即可：模型实例不保存请求级状态，多个并发流共享同一个实例和底层 HTTP 客户端
+     */
     @Bean
-    @Scope("prototype")
-    public StreamingChatModel streamingChatModelPrototype() {
+    public StreamingChatModel streamingChatModel(@Qualifier("aiHttpClientBuilder") HttpClientBuilder aiHttpClientBuilder) {
         return OpenAiStreamingChatModel.builder()
+                .httpClientBuilder(aiHttpClientBuilder)
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
                 .modelName(modelName)
@@ -0,0 +1,46 @@
+package com.easen.aicode.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Vue 项目构建配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai-code.vue-build")
+@Data
+public class VueBuildConfig {
+
+    /**
+     * 同时执行的构建数（npm 构建占用大量 CPU 和内存）
+     */
+    private int workers = 2;
+
+    /**
+     * 等待执行的构建数上限，超出后直接返回失败
+     */
+    private int queueCapacity = 50;
+
+    /**
+     * npm install 超时时间
+     */
+    private Duration installTimeout = Duration.ofMinutes(5);
+
+    /**
+     * npm run build 超时时间
+     */
+    private Duration buildTimeout = Duration.ofMinutes(3);
+
+    /**
+     * 是否开启依赖缓存：按 package.json 和锁文件的哈希缓存 node_modules，相同依赖的项目直接硬链接复用
+     */
+    private boolean dependencyCacheEnabled = true;
+
+    /**
+     * 依赖缓存目录（同时作为 npm 的下载缓存目录），需要与项目目录在同一文件系统才能使用硬链接
+     */
+    private String dependencyCacheDir = System.getProperty("user.dir") + "/tmp/npm_deps_cache";
+}
@@ -0,0 +1,12 @@
+package com.easen.aicode.constant;
+
+/**
+ * 对话记忆常量
+ */
+public interface ChatMemoryConstant {
+
+    /**
+     * 记忆水位线 key 前缀，值为 Redis 记忆已包含的最新一条对话历史 ID
+     */
+    String WATERMARK_KEY_PREFIX = "chat:memory:watermark:";
+}
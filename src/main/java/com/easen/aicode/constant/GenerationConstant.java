@@ -0,0 +1,22 @@
+package com.easen.aicode.constant;
+
+/**
+ * 代码生成任务常量
+ */
+public interface GenerationConstant {
+
+    /**
+     * 应用生成租约（可过期信号量）key 前缀
+     */
+    String LEASE_KEY_PREFIX = "generation:lease:";
+
+    /**
+     * 租约持有者信息 key 前缀，值为 nodeId:userId:permitId
+     */
+    String LEASE_OWNER_KEY_PREFIX = "generation:owner:";
+
+    /**
+     * 跨节点取消任务的广播频道
+     */
+    String CANCEL_TOPIC = "generation:cancel";
+}
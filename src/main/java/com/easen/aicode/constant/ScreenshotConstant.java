@@ -0,0 +1,12 @@
+package com.easen.aicode.constant;
+
+/**
+ * 网页截图常量
+ */
+public interface ScreenshotConstant {
+
+    /**
+     * 部署目录内容指纹 -> 封面 URL 的 key 前缀
+     */
+    String COVER_FINGERPRINT_KEY_PREFIX = "screenshot:cover:";
+}
@@ -3,6 +3,9 @@ package com.easen.aicode.controller;
 import cn.dev33.satoken.annotation.SaCheckRole;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
+import com.easen.aicode.ai.model.message.AiResponseMessage;
+import com.easen.aicode.ai.model.message.StreamFrame;
+import com.easen.aicode.ai.model.message.StreamMessage;
 import com.easen.aicode.common.BaseResponse;
 import com.easen.aicode.common.DeleteRequest;
 import com.easen.aicode.common.PageRequest;
@@ -74,33 +77,62 @@ public class AppController {
      *
      * @param appId   应用 ID
      * @param message 用户消息
+     * @param lastEventId 断线重连时浏览器自动带上的最后事件 ID
      * @param request 请求对象
      * @return 生成结果流
      */
     @GetMapping(value = "/chat/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @SaSpaceCheckPermission(value = AppUserPermissionConstant.APP_EDIT)
-    @RateLimit(limitType = RateLimitType.USER, rate = 7, rateInterval = 60, message = "AI 对话请求过于频繁，请稍后再试")
+    // 断线重连只接入原来的生成，不占用对话次数
+    @RateLimit(limitType = RateLimitType.USER, rate = 7, rateInterval = 60, message = "AI 对话请求过于频繁，请稍后再试",
+            skipIfHeader = "Last-Event-ID")
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                                        @RequestParam String message,
                                                        @RequestParam(required = false) List<String> image,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
                                                        HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
+        // EventSource 断线自动重连会带上 Last-Event-ID，此时接入原来的生成，不重新调用模型
+        if (StrUtil.isNotBlank(lastEventId)) {
+            return toServerSentEvents(appService.resumeGenCode(appId, lastEventId, loginUser));
+        }
         //调用工作流生成代码
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser, image);
-        // 转换为 ServerSentEvent 格式
-        return contentFlux
-                .map(chunk -> {
-                    // 将内容包装成JSON对象
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
-                    return ServerSentEvent.<String>builder()
-                            .data(jsonData)
-                            .build();
-                })
+        Flux<StreamFrame> frameFlux = appService.chatToGenCode(appId, message, loginUser, image);
+        return toServerSentEvents(frameFlux);
+    }
+
+    /**
+     * 接入进行中的代码生成（流式 SSE）
+     * 断线后从最后收到的事件继续接收，也可用于其他成员同时查看生成过程
+     *
+     * @param appId       应用 ID
+     * @param lastEventId 最后收到的事件 ID（请求头 Last-Event-ID 或参数 lastEventId），为空时从头接收
+     * @param request     请求对象
+     * @return 生成结果流
+     */
+    @GetMapping(value = "/chat/code/resume", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @SaSpaceCheckPermission(value = AppUserPermissionConstant.APP_VIEW)
+    public Flux<ServerSentEvent<String>> resumeGenCode(@RequestParam Long appId,
+                                                       @RequestParam(required = false) String lastEventId,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                                       HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        String resumeFrom = StrUtil.isNotBlank(lastEventIdHeader) ? lastEventIdHeader : lastEventId;
+        return toServerSentEvents(appService.resumeGenCode(appId, resumeFrom, loginUser));
+    }
+
+    /**
+     * 帧流转换为 SSE 事件流，并在结束时追加 done 事件
+     */
+    private Flux<ServerSentEvent<String>> toServerSentEvents(Flux<StreamFrame> frameFlux) {
+        // 转换为 ServerSentEvent 格式，消息只在这里序列化一次
+        return frameFlux
+                .map(this::toServerSentEvent)
                 .concatWith(Mono.just(
                         // 发送结束事件
                         ServerSentEvent.<String>builder()
@@ -110,6 +142,30 @@ public class AppController {
                 ));
     }
 
+    /**
+     * 流式消息帧转换为 SSE 事件
+     * AI 响应包装为 {"d": 内容} 的默认事件，其他类型以消息类型作为事件名，事件 ID 用于断线续传
+     *
+     * @param frame 流式消息帧
+     * @return SSE 事件
+     */
+    private ServerSentEvent<String> toServerSentEvent(StreamFrame frame) {
+        StreamMessage streamMessage = frame.message();
+        if (streamMessage instanceof AiResponseMessage aiResponseMessage) {
+            // 将内容包装成JSON对象
+            Map<String, String> wrapper = Map.of("d", aiResponseMessage.getData());
+            return ServerSentEvent.<String>builder()
+                    .id(frame.eventId())
+                    .data(JSONUtil.toJsonStr(wrapper))
+                    .build();
+        }
+        return ServerSentEvent.<String>builder()
+                .id(frame.eventId())
+                .event(streamMessage.getType())
+                .data(JSONUtil.toJsonStr(streamMessage))
+                .build();
+    }
+
     /**
      * 取消正在进行的代码生成
      *
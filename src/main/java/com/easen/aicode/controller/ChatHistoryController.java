@@ -2,6 +2,7 @@ package com.easen.aicode.controller;
 
 import cn.dev33.satoken.annotation.SaCheckRole;
 import com.easen.aicode.common.BaseResponse;
+import com.easen.aicode.common.CursorPage;
 import com.easen.aicode.common.ResultUtils;
 import com.easen.aicode.constant.UserConstant;
 
@@ -47,6 +48,23 @@ public class ChatHistoryController {
         return ResultUtils.success(result);
     }
 
+    /**
+     * 键集游标查询某个应用的对话历史（不统计总数）
+     *
+     * @param appId    应用ID
+     * @param pageSize 页面大小
+     * @param cursor   上一页返回的 nextCursor，首页不传
+     * @return 对话历史游标分页
+     */
+    @GetMapping("/app/cursor")
+    @SaSpaceCheckPermission(value = AppUserPermissionConstant.APP_VIEW)
+    public BaseResponse<CursorPage<ChatHistoryVO>> listAppChatHistoryByCursor(@RequestParam Long appId,
+                                                                             @RequestParam(defaultValue = "10") int pageSize,
+                                                                             @RequestParam(required = false) String cursor) {
+        CursorPage<ChatHistoryVO> result = chatHistoryService.listAppChatHistoryVOByCursor(appId, pageSize, cursor);
+        return ResultUtils.success(result);
+    }
+
     /**
      * 管理员分页查询所有对话历史
      *
@@ -2,81 +2,78 @@ package com.easen.aicode.controller;
 
 import cn.dev33.satoken.annotation.SaCheckLogin;
 import com.easen.aicode.constant.AppConstant;
+import com.easen.aicode.manager.PreviewFileServer;
 import com.easen.aicode.manager.auth.annotation.SaSpaceCheckPermission;
 import com.easen.aicode.manager.auth.model.AppUserPermissionConstant;
+import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.HandlerMapping;
 
-import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * 静态资源访问
  */
+@Slf4j
 @RestController
 @RequestMapping("/static")
 public class StaticResourceController {
 
     // 应用生成根目录（用于浏览）
-    private static final String PREVIEW_ROOT_DIR = AppConstant.CODE_OUTPUT_ROOT_DIR;
+    private static final Path PREVIEW_ROOT_DIR = Path.of(AppConstant.CODE_OUTPUT_ROOT_DIR).toAbsolutePath().normalize();
+
+    @Resource
+    private PreviewFileServer previewFileServer;
 
     /**
-     * 提供静态资源访问，支持目录重定向
+     * 提供静态资源访问，支持目录重定向、条件请求（304）和 Range 请求
      * 访问格式：http://localhost:8123/api/static/{deployKey}[/{fileName}]
      */
     @GetMapping("/{deployKey}/**")
     @SaCheckLogin
-    public ResponseEntity<Resource> serveStaticResource(
+    public void serveStaticResource(
             @PathVariable String deployKey,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
             // 获取资源路径
             String resourcePath = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
             resourcePath = resourcePath.substring(("/static/" + deployKey).length());
             // 如果是目录访问（不带斜杠），重定向到带斜杠的URL
             if (resourcePath.isEmpty()) {
-                HttpHeaders headers = new HttpHeaders();
-                headers.add("Location", request.getRequestURI() + "/");
-                return new ResponseEntity<>(headers, HttpStatus.MOVED_PERMANENTLY);
+                response.setStatus(HttpStatus.MOVED_PERMANENTLY.value());
+                response.setHeader(HttpHeaders.LOCATION, request.getRequestURI() + "/");
+                return;
             }
             // 默认返回 index.html
             if (resourcePath.equals("/")) {
                 resourcePath = "/index.html";
             }
-            // 构建文件路径
-            String filePath = PREVIEW_ROOT_DIR + "/" + deployKey + resourcePath;
-            File file = new File(filePath);
-            // 检查文件是否存在
-            if (!file.exists()) {
-                return ResponseEntity.notFound().build();
+            // 构建文件路径，规范化后必须仍在应用目录内（防止 ../ 访问其他应用或系统文件）
+            String relativePath = resourcePath.substring(1);
+            Path appDir = PREVIEW_ROOT_DIR.resolve(deployKey).normalize();
+            Path file = appDir.resolve(relativePath).normalize();
+            if (!appDir.startsWith(PREVIEW_ROOT_DIR) || appDir.equals(PREVIEW_ROOT_DIR)
+                    || !file.startsWith(appDir) || !Files.isRegularFile(file)) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
-            // 返回文件资源
-            Resource resource = new FileSystemResource(file);
-            return ResponseEntity.ok()
-                    .header("Content-Type", getContentTypeWithCharset(filePath))
-                    .body(resource);
+            String normalizedPath = appDir.relativize(file).toString().replace('\\', '/');
+            previewFileServer.serve(file, appDir.getFileName().toString(), normalizedPath, request, response);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            log.warn("静态资源访问失败: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
-
-    /**
-     * 根据文件扩展名返回带字符编码的 Content-Type
-     */
-    private String getContentTypeWithCharset(String filePath) {
-        if (filePath.endsWith(".html")) return "text/html; charset=UTF-8";
-        if (filePath.endsWith(".css")) return "text/css; charset=UTF-8";
-        if (filePath.endsWith(".js")) return "application/javascript; charset=UTF-8";
-        if (filePath.endsWith(".png")) return "image/png";
-        if (filePath.endsWith(".jpg")) return "image/jpeg";
-        return "application/octet-stream";
-    }
 }
@@ -1,18 +1,22 @@
 package com.easen.aicode.core;
 
-import cn.hutool.json.JSONUtil;
 import com.easen.aicode.ai.AiCodeGeneratorService;
 import com.easen.aicode.ai.AiCodeGeneratorServiceFactory;
 import com.easen.aicode.ai.GenerationTaskManager;
 import com.easen.aicode.ai.model.HtmlCodeResult;
 import com.easen.aicode.ai.model.MultiFileCodeResult;
 import com.easen.aicode.ai.model.message.AiResponseMessage;
+import com.easen.aicode.ai.model.message.BuildStatusMessage;
+import com.easen.aicode.ai.model.message.StreamMessage;
 import com.easen.aicode.ai.model.message.ToolExecutedMessage;
 import com.easen.aicode.ai.model.message.ToolRequestMessage;
 import com.easen.aicode.constant.AppConstant;
+import com.easen.aicode.core.buffer.GenerationBuffer;
 import com.easen.aicode.core.builder.VueProjectBuilder;
 import com.easen.aicode.core.parser.CodeParserExecutor;
+import com.easen.aicode.core.parser.StreamingCodeParser;
 import com.easen.aicode.core.saver.CodeFileSaverExecutor;
+import com.easen.aicode.core.saver.StreamingCodeFileSaver;
 import com.easen.aicode.exception.BusinessException;
 import com.easen.aicode.exception.ErrorCode;
 import com.easen.aicode.model.enums.CodeGenTypeEnum;
@@ -23,6 +27,7 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
 
@@ -81,32 +86,77 @@ public class AiCodeGeneratorFacade {
      * @param codeGenTypeEnum 生成类型
      * @param appId 应用 ID
      * @param userId 用户ID
-     * @return 保存的目录
+     * @return 流式消息（进程内类型化传递，仅在 SSE 出口序列化）
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId, Long userId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId, Long userId) {
+        return generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId, userId, new GenerationBuffer());
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码（流式）
+     * HTML / MULTI_FILE 的原始输出直接写入 buffer；VUE_PROJECT 的输出需要转换格式，由流处理器写入
+     *
+     * @param userMessage     用户提示词
+     * @param codeGenTypeEnum 生成类型
+     * @param appId 应用 ID
+     * @param userId 用户ID
+     * @param buffer 本次生成共享的内容缓冲区
+     * @return 流式消息（进程内类型化传递，仅在 SSE 出口序列化）
+     */
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId, Long userId, GenerationBuffer buffer) {
+        return generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId, userId, buffer, () -> {
+        });
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码（流式）
+     *
+     * @param userMessage     用户提示词
+     * @param codeGenTypeEnum 生成类型
+     * @param appId 应用 ID
+     * @param userId 用户ID
+     * @param buffer 本次生成共享的内容缓冲区
+     * @param onLeaseAcquired 获得生成租约后、调用 AI 前执行（如保存用户消息），租约被拒绝时不执行；抛出异常时释放租约
+     * @return 流式消息（进程内类型化传递，仅在 SSE 出口序列化）
+     */
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId, Long userId,
+                                                         GenerationBuffer buffer, Runnable onLeaseAcquired) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "生成类型不能为空");
         }
         
-        // 检查是否已有正在进行的任务
-        if (generationTaskManager.hasActiveTask(appId)) {
+        // 原子获取应用的生成租约（集群内同一应用只允许一个生成任务）
+        if (!generationTaskManager.tryStartTask(appId, userId)) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "该应用已有正在进行的生成任务，请等待完成或取消后再试");
         }
-        
+        try {
+            onLeaseAcquired.run();
+            return startGeneration(userMessage, codeGenTypeEnum, appId, userId, buffer);
+        } catch (RuntimeException e) {
+            // 生成流未能启动，释放租约
+            generationTaskManager.completeTask(appId);
+            throw e;
+        }
+    }
+
+    /**
+     * 已持有生成租约，按类型启动生成流
+     */
+    private Flux<StreamMessage> startGeneration(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId, Long userId, GenerationBuffer buffer) {
         // 根据 appId 获取对应的 AI 服务实例
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
         return switch (codeGenTypeEnum) {
             case HTML -> {
                 Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId, userId);
+                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId, userId, buffer);
             }
             case MULTI_FILE -> {
                 Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId, userId);
+                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId, userId, buffer);
             }
             case VUE_PROJECT -> {
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
-                yield processTokenStream(tokenStream, appId, userId);
+                yield processTokenStream(tokenStream, appId, userId, buffer);
             }
             default -> {
                 String errorMessage = "不支持的生成类型：" + codeGenTypeEnum.getValue();
@@ -143,35 +193,32 @@ public class AiCodeGeneratorFacade {
      * @param codeGenType 代码生成类型
      * @param appId 应用 ID
      * @param userId 用户ID
+     * @param buffer 内容缓冲区
      * @return 流式响应
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId, Long userId) {
-        // 字符串拼接器，用于当流式返回所有的代码之后，再保存代码
-        StringBuilder codeBuilder = new StringBuilder();
-        // 部分内容收集器，用于取消时保存已生成的内容
-        StringBuilder partialContentBuilder = new StringBuilder();
-        
-        return Flux.create((FluxSink<String> sink) -> {
+    private Flux<StreamMessage> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId, Long userId, GenerationBuffer buffer) {
+        return Flux.create((FluxSink<StreamMessage> sink) -> {
+            // 增量解析代码块，内容到达即写入临时文件，完成后再原子提交
+            StreamingCodeFileSaver codeFileSaver = CodeFileSaverExecutor.createStreamingSaver(codeGenType, appId);
+            StreamingCodeParser codeParser = CodeParserExecutor.createStreamingParser(codeGenType, codeFileSaver);
             // 注册任务到管理器
             Disposable disposable = codeStream
                     .doOnNext(chunk -> {
-                        // 实时收集代码片段
-                        codeBuilder.append(chunk);
-                        // 同时收集部分内容用于取消时保存
-                        partialContentBuilder.append(chunk);
+                        // 实时解析代码片段
+                        codeParser.feed(chunk);
+                        // 写入共享缓冲区，供任务管理和对话历史读取
+                        buffer.append(chunk);
                         // 发送到客户端
-                        sink.next(chunk);
+                        sink.next(new AiResponseMessage(chunk));
                     })
                     .doOnComplete(() -> {
-                        // 流式返回完成后，保存代码
+                        // 流式返回完成后，提交已写入的代码文件
                         try {
-                            String completeCode = codeBuilder.toString();
-                            // 使用执行器解析代码
-                            Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                            // 使用执行器保存代码
-                            File saveDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
+                            codeParser.finish();
+                            File saveDir = codeFileSaver.commit();
                             log.info("保存成功，目录为：{}", saveDir.getAbsolutePath());
                         } catch (Exception e) {
+                            codeFileSaver.abort();
                             log.error("保存失败: {}", e.getMessage());
                         } finally {
                             // 完成任务
@@ -181,58 +228,72 @@ public class AiCodeGeneratorFacade {
                     })
                     .doOnError(error -> {
                         log.error("代码生成失败: {}", error.getMessage());
+                        codeFileSaver.abort();
                         generationTaskManager.completeTask(appId);
                         sink.error(error);
                     })
+                    // 任务被取消时丢弃未完成的文件
+                    .doOnCancel(codeFileSaver::abort)
                     .subscribe();
             
-            // 注册任务，传递部分内容收集器
-            generationTaskManager.registerTask(appId, codeGenType.getValue(), disposable, sink, userId, partialContentBuilder);
+            // 注册任务，传递内容缓冲区
+            generationTaskManager.registerTask(appId, codeGenType.getValue(), disposable, sink, userId, buffer);
+            // 生成管道被中止（客户端断开）时停止上游
+            sink.onCancel(() -> generationTaskManager.abortTask(appId, sink));
         });
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
      *
      * @param tokenStream TokenStream 对象
      * @param appId 应用ID
      * @param userId 用户ID
-     * @return Flux<String> 流式响应
+     * @param buffer 内容缓冲区（由 JsonMessageStreamHandler 写入）
+     * @return Flux<StreamMessage> 流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream, Long appId, Long userId) {
-        // 部分内容收集器，用于取消时保存已生成的内容
-        StringBuilder partialContentBuilder = new StringBuilder();
-        
-        return Flux.create((FluxSink<String> sink) -> {
-            // 注册任务到管理器
-            Disposable disposable = Flux.never().subscribe(); // 占位符，实际取消逻辑在TokenStream中
-            
-            generationTaskManager.registerTask(appId, "VUE_PROJECT", disposable, sink, userId, partialContentBuilder);
-            
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, Long appId, Long userId, GenerationBuffer buffer) {
+        return Flux.create((FluxSink<StreamMessage> sink) -> {
+            // 取消任务时中断模型连接并停止后续工具调用，取消后不再触发完成和错误回调
+            Disposable disposable = Disposables.composite(tokenStream::cancel);
+
+            generationTaskManager.registerTask(appId, "VUE_PROJECT", disposable, sink, userId, buffer);
+            sink.onCancel(() -> generationTaskManager.abortTask(appId, sink));
+
             tokenStream.onPartialResponse((String partialResponse) -> {
                         AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        // 收集部分内容
-                        partialContentBuilder.append(partialResponse);
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                        sink.next(aiResponseMessage);
                     })
                     .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
                         ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                        sink.next(toolRequestMessage);
                     })
                     .onToolExecuted((ToolExecution toolExecution) -> {
                         ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                        sink.next(toolExecutedMessage);
                     })
                     .onCompleteResponse((ChatResponse response) -> {
-                        // 执行 Vue 项目构建（同步执行，确保预览时项目已就绪）
+                        // 模型输出结束到这里之间可能被取消，已取消的任务不再构建
+                        if (disposable.isDisposed()) {
+                            log.info("生成任务已取消，跳过项目构建: appId={}", appId);
+                            return;
+                        }
+                        // 交给构建服务执行 Vue 项目构建，构建结束后再结束流，确保预览时项目已就绪
                         String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
-                        vueProjectBuilder.buildProject(projectPath);
-
-                        generationTaskManager.completeTask(appId);
-                        sink.complete();
+                        long buildStart = System.currentTimeMillis();
+                        sink.next(new BuildStatusMessage(BuildStatusMessage.BUILDING, 0));
+                        vueProjectBuilder.buildProjectAsync(projectPath).thenAccept(success -> {
+                            if (disposable.isDisposed()) {
+                                return;
+                            }
+                            String status = success ? BuildStatusMessage.SUCCESS : BuildStatusMessage.FAILED;
+                            sink.next(new BuildStatusMessage(status, System.currentTimeMillis() - buildStart));
+                            generationTaskManager.completeTask(appId);
+                            sink.complete();
+                        });
                     })
                     .onError((Throwable error) -> {
-                        error.printStackTrace();
+                        log.error("Vue 项目代码生成失败: appId={}", appId, error);
                         generationTaskManager.completeTask(appId);
                         sink.error(error);
                     })
@@ -0,0 +1,108 @@
+package com.easen.aicode.core.buffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 生成内容缓冲区
+ * 一次代码生成共享一个实例，任务管理器、流处理器和对话历史持久化都读取同一份内容，避免重复拼接。
+ * 内部按固定大小分段存储，只追加不修改，扩容时不会整体复制已有内容
+ * <p>
+ * 追加与读取可能来自不同线程（如取消任务），方法均加锁
+ */
+public class GenerationBuffer {
+
+    /**
+     * 单个分段的字符数
+     */
+    private static final int SEGMENT_SIZE = 8 * 1024;
+
+    private final List<char[]> segments = new ArrayList<>();
+
+    /**
+     * 最后一个分段已使用的字符数
+     */
+    private int tailUsed = SEGMENT_SIZE;
+
+    private long length;
+
+    /**
+     * 追加内容
+     *
+     * @param content 内容
+     * @return 当前缓冲区
+     */
+    public synchronized GenerationBuffer append(CharSequence content) {
+        if (content == null) {
+            return this;
+        }
+        int offset = 0;
+        int remaining = content.length();
+        while (remaining > 0) {
+            if (tailUsed == SEGMENT_SIZE) {
+                segments.add(new char[SEGMENT_SIZE]);
+                tailUsed = 0;
+            }
+            char[] tail = segments.get(segments.size() - 1);
+            int count = Math.min(remaining, SEGMENT_SIZE - tailUsed);
+            if (content instanceof String str) {
+                str.getChars(offset, offset + count, tail, tailUsed);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    tail[tailUsed + i] = content.charAt(offset + i);
+                }
+            }
+            tailUsed += count;
+            offset += count;
+            remaining -= count;
+        }
+        length += content.length();
+        return this;
+    }
+
+    /**
+     * 已写入的字符数
+     */
+    public synchronized long length() {
+        return length;
+    }
+
+    public synchronized boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * 按分段写出到目标，不生成中间字符串
+     *
+     * @param target 目标
+     */
+    public synchronized void writeTo(Appendable target) {
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                char[] segment = segments.get(i);
+                int used = i == segments.size() - 1 ? tailUsed : SEGMENT_SIZE;
+                target.append(CharBuffer.wrap(segment, 0, used));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 生成完整内容（一次性按精确长度分配）
+     */
+    @Override
+    public synchronized String toString() {
+        char[] result = new char[Math.toIntExact(length)];
+        int position = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int used = i == segments.size() - 1 ? tailUsed : SEGMENT_SIZE;
+            System.arraycopy(segments.get(i), 0, result, position, used);
+            position += used;
+        }
+        return new String(result);
+    }
+}
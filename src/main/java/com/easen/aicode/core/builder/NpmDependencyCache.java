@@ -0,0 +1,191 @@
+package com.easen.aicode.core.builder;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.easen.aicode.config.VueBuildConfig;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * npm 依赖缓存
+ * <p>
+ * 以 package.json 和锁文件内容的哈希为键，保存一份安装好的 node_modules 模板。
+ * 生成的项目依赖大多相同，命中缓存时用硬链接把模板"复制"到项目中，耗时从分钟级降到秒级且几乎不占额外磁盘。
+ * 硬链接与模板共享文件内容，所以项目中的标记文件等需要先删除再写入，不能原地修改
+ */
+@Slf4j
+@Component
+public class NpmDependencyCache {
+
+    /**
+     * 参与计算缓存键的依赖描述文件
+     */
+    private static final List<String> DEPENDENCY_FILES = List.of("package.json", "package-lock.json", "pnpm-lock.yaml", "yarn.lock");
+
+    /**
+     * 项目 node_modules 中记录依赖哈希的标记文件
+     */
+    private static final String MARKER_FILE = ".deps-hash";
+
+    /**
+     * 构建过程中产生的缓存目录，属于单个项目，不进入模板
+     */
+    private static final Set<String> EXCLUDED_NAMES = Set.of(MARKER_FILE, ".vite", ".cache");
+
+    @Resource
+    private VueBuildConfig vueBuildConfig;
+
+    /**
+     * 计算项目依赖的缓存键
+     */
+    public String computeKey(File projectDir) throws IOException {
+        MessageDigest digest = DigestUtil.digester("SHA-256").getDigest();
+        for (String name : DEPENDENCY_FILES) {
+            File file = new File(projectDir, name);
+            if (file.isFile()) {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(file.toPath()));
+            }
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 项目中已安装的依赖是否与缓存键一致
+     */
+    public boolean isInstalled(File projectDir, String key) {
+        File marker = new File(projectDir, "node_modules/" + MARKER_FILE);
+        return marker.isFile() && key.equals(FileUtil.readUtf8String(marker).trim());
+    }
+
+    /**
+     * 从缓存模板恢复项目的 node_modules
+     *
+     * @return 是否命中缓存
+     */
+    public boolean restore(File projectDir, String key) {
+        Path template = templatePath(key);
+        if (!Files.isDirectory(template)) {
+            return false;
+        }
+        Path target = projectDir.toPath().resolve("node_modules");
+        try {
+            FileUtil.del(target);
+            linkTree(template, target);
+            writeMarker(projectDir, key);
+            return true;
+        } catch (IOException e) {
+            log.warn("从依赖缓存恢复失败，改为执行 npm install: {}, {}", projectDir, e.getMessage());
+            FileUtil.del(target);
+            return false;
+        }
+    }
+
+    /**
+     * 执行 npm install 前调用：node_modules 由缓存管理（从模板恢复，或已保存为模板）时与模板共享文件内容，
+     * 直接在其上安装时 postinstall 等步骤原地改写文件会破坏其他项目共用的模板，需要先删除
+     */
+    public void prepareInstall(File projectDir) {
+        File nodeModules = new File(projectDir, "node_modules");
+        if (new File(nodeModules, MARKER_FILE).isFile()) {
+            log.info("依赖已变化，删除与缓存模板共享的 node_modules：{}", projectDir);
+            FileUtil.del(nodeModules);
+        }
+    }
+
+    /**
+     * 安装完成后写入标记，并把 node_modules 保存为缓存模板（已存在时跳过）
+     */
+    public void store(File projectDir, String key) {
+        try {
+            writeMarker(projectDir, key);
+            Path template = templatePath(key);
+            if (Files.isDirectory(template)) {
+                return;
+            }
+            // 先写到临时目录再原子改名，并发保存同一模板时只有一个生效
+            Path staging = template.resolveSibling(".staging-" + IdUtil.fastSimpleUUID());
+            try {
+                linkTree(projectDir.toPath().resolve("node_modules"), staging);
+                Files.move(staging, template, StandardCopyOption.ATOMIC_MOVE);
+                log.info("保存依赖缓存模板: {}", key);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                log.debug("依赖缓存模板已由其他构建保存: {}", key);
+            } finally {
+                FileUtil.del(staging);
+            }
+        } catch (IOException e) {
+            log.warn("保存依赖缓存失败: {}, {}", projectDir, e.getMessage());
+        }
+    }
+
+    /**
+     * npm 下载缓存目录，所有项目共享
+     */
+    public String getNpmCacheDir() {
+        return Path.of(vueBuildConfig.getDependencyCacheDir(), "npm").toString();
+    }
+
+    private Path templatePath(String key) {
+        return Path.of(vueBuildConfig.getDependencyCacheDir(), "modules", key);
+    }
+
+    private void writeMarker(File projectDir, String key) throws IOException {
+        Path marker = projectDir.toPath().resolve("node_modules").resolve(MARKER_FILE);
+        // 可能是指向模板的硬链接，先删除再写入
+        Files.deleteIfExists(marker);
+        Files.writeString(marker, key);
+    }
+
+    /**
+     * 用硬链接复制目录树，符号链接（如 .bin 下的命令）按原目标重建，跨文件系统时退化为普通复制
+     */
+    private static void linkTree(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(source) && EXCLUDED_NAMES.contains(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (EXCLUDED_NAMES.contains(file.getFileName().toString())) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path destination = target.resolve(source.relativize(file));
+                if (attrs.isSymbolicLink()) {
+                    Files.createSymbolicLink(destination, Files.readSymbolicLink(file));
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    Files.createLink(destination, file);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(file, destination, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -1,72 +1,245 @@
 package com.easen.aicode.core.builder;
 
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RuntimeUtil;
+import com.easen.aicode.config.VueBuildConfig;
+import com.easen.aicode.utils.DirectoryFingerprintUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 构建 Vue 项目
+ * <p>
+ * 构建在固定数量的工作线程上排队执行，避免大量 npm 进程同时运行拖垮节点；
+ * 同一项目已在排队时新的构建请求直接复用它，正在构建时新请求排在它之后（源码可能已变化，不能直接复用）。
+ * 依赖按 package.json/锁文件哈希缓存，命中时跳过 npm install；源码指纹与上次成功构建一致时整个构建都跳过
  */
 @Slf4j
 @Component
 public class VueProjectBuilder {
 
+    /**
+     * 源码指纹文件，位于项目根目录
+     */
+    private static final String FINGERPRINT_FILE = ".build-fingerprint";
+
+    /**
+     * 不参与源码指纹计算的文件和目录
+     */
+    private static final Set<String> FINGERPRINT_EXCLUDES = Set.of("node_modules", "dist", FINGERPRINT_FILE);
+
+    @Resource
+    private VueBuildConfig vueBuildConfig;
+
+    @Resource
+    private NpmDependencyCache npmDependencyCache;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor buildExecutor;
+
+    /**
+     * 每个项目最近一次提交的构建（排队中或执行中），key 为项目目录绝对路径
+     */
+    private final Map<String, BuildTask> latestBuilds = new HashMap<>();
+
+    private Counter deduplicatedCounter;
+
+    @PostConstruct
+    public void init() {
+        int workers = vueBuildConfig.getWorkers();
+        buildExecutor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(vueBuildConfig.getQueueCapacity()),
+                Thread.ofVirtual().name("vue-builder-", 0).factory());
+        Gauge.builder("ai.vue.build.queue", buildExecutor, executor -> executor.getQueue().size())
+                .description("等待执行的 Vue 项目构建数")
+                .register(meterRegistry);
+        Gauge.builder("ai.vue.build.running", buildExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("正在执行的 Vue 项目构建数")
+                .register(meterRegistry);
+        deduplicatedCounter = Counter.builder("ai.vue.build.deduplicated")
+                .description("复用排队中构建的请求数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 执行中的构建被中断后以失败结束；排队中的构建不会再执行，直接以失败结束，避免调用方一直等待
+        List<Runnable> queued = buildExecutor.shutdownNow();
+        for (Runnable runnable : queued) {
+            if (runnable instanceof BuildRunnable buildRunnable) {
+                finish(buildRunnable.task, false);
+            }
+        }
+        if (!queued.isEmpty()) {
+            log.warn("停机时取消 {} 个排队中的构建", queued.size());
+        }
+    }
+
     /**
      * 异步构建 Vue 项目
      *
-     * @param projectPath
+     * @param projectPath 项目根目录路径
+     * @return 构建结果（是否成功），不会异常完成
      */
-    public void buildProjectAsync(String projectPath) {
-        Thread.ofVirtual().name("vue-builder-" + System.currentTimeMillis())
-                .start(() -> {
-                    try {
-                        buildProject(projectPath);
-                    } catch (Exception e) {
-                        log.error("异步构建 Vue 项目时发生异常: {}", e.getMessage(), e);
-                    }
-                });
+    public CompletableFuture<Boolean> buildProjectAsync(String projectPath) {
+        String key = new File(projectPath).getAbsolutePath();
+        synchronized (latestBuilds) {
+            BuildTask latest = latestBuilds.get(key);
+            if (latest != null && !latest.started) {
+                deduplicatedCounter.increment();
+                log.info("项目已在构建队列中，复用该构建：{}", projectPath);
+                return latest.result;
+            }
+            BuildTask task = new BuildTask(key, projectPath);
+            latestBuilds.put(key, task);
+            // 同一项目的构建串行执行，上一次结束后再进入构建队列
+            CompletableFuture<Boolean> previous = latest == null ? CompletableFuture.completedFuture(true) : latest.result;
+            previous.whenComplete((ignored, error) -> enqueue(task));
+            return task.result;
+        }
     }
 
     /**
-     * 构建 Vue 项目
+     * 构建 Vue 项目（等待构建完成）
      *
      * @param projectPath 项目根目录路径
      * @return 是否构建成功
      */
     public boolean buildProject(String projectPath) {
+        return buildProjectAsync(projectPath).join();
+    }
+
+    private void enqueue(BuildTask task) {
+        try {
+            buildExecutor.execute(new BuildRunnable(task));
+        } catch (RejectedExecutionException e) {
+            log.error("构建队列已满，拒绝构建：{}", task.projectPath);
+            finish(task, false);
+        }
+    }
+
+    private void run(BuildTask task) {
+        synchronized (latestBuilds) {
+            task.started = true;
+        }
+        long start = System.nanoTime();
+        BuildOutcome outcome = BuildOutcome.FAILED;
+        try {
+            outcome = doBuild(task.projectPath);
+        } catch (Exception e) {
+            log.error("构建 Vue 项目时发生异常: {}", e.getMessage(), e);
+        } finally {
+            Timer.builder("ai.vue.build.duration")
+                    .description("Vue 项目构建耗时（不含排队）")
+                    .tag("outcome", outcome.outcome)
+                    .tag("dependencies", outcome.dependencies)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            finish(task, outcome != BuildOutcome.FAILED);
+        }
+    }
+
+    private void finish(BuildTask task, boolean success) {
+        synchronized (latestBuilds) {
+            latestBuilds.remove(task.key, task);
+        }
+        task.result.complete(success);
+    }
+
+    /**
+     * 执行构建
+     */
+    private BuildOutcome doBuild(String projectPath) throws IOException {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在：{}", projectPath);
-            return false;
+            return BuildOutcome.FAILED;
         }
         // 检查是否有 package.json 文件
         File packageJsonFile = new File(projectDir, "package.json");
         if (!packageJsonFile.exists()) {
             log.error("项目目录中没有 package.json 文件：{}", projectPath);
-            return false;
+            return BuildOutcome.FAILED;
         }
+        // 源码与上次成功构建时一致且 dist 仍在，直接复用
+        String fingerprint = DirectoryFingerprintUtils.fingerprint(projectDir.toPath(), FINGERPRINT_EXCLUDES);
+        File fingerprintFile = new File(projectDir, FINGERPRINT_FILE);
+        File distDir = new File(projectDir, "dist");
+        if (distDir.isDirectory() && fingerprintFile.isFile()
+                && fingerprint.equals(FileUtil.readUtf8String(fingerprintFile).trim())) {
+            log.info("源码未变化，跳过构建：{}", projectPath);
+            return BuildOutcome.UNCHANGED;
+        }
+        // 构建失败时 dist 可能已被清空，先删除旧指纹
+        FileUtil.del(fingerprintFile);
         log.info("开始构建 Vue 项目：{}", projectPath);
-        // 执行 npm install
-        if (!executeNpmInstall(projectDir)) {
+        BuildOutcome outcome = installDependencies(projectDir);
+        if (outcome == BuildOutcome.FAILED) {
             log.error("npm install 执行失败：{}", projectPath);
-            return false;
+            return BuildOutcome.FAILED;
         }
         // 执行 npm run build
         if (!executeNpmBuild(projectDir)) {
             log.error("npm run build 执行失败：{}", projectPath);
-            return false;
+            return BuildOutcome.FAILED;
         }
         // 验证 dist 目录是否生成
-        File distDir = new File(projectDir, "dist");
         if (!distDir.exists() || !distDir.isDirectory()) {
             log.error("构建完成但 dist 目录未生成：{}", projectPath);
-            return false;
+            return BuildOutcome.FAILED;
         }
+        // 记录本次构建使用的源码指纹（构建期间源码再变化时下次会重新构建）
+        FileUtil.writeUtf8String(fingerprint, fingerprintFile);
         log.info("Vue 项目构建成功，dist 目录：{}", projectPath);
-        return true;
+        return outcome;
+    }
+
+    /**
+     * 安装依赖：已安装且依赖未变化时跳过，命中缓存时硬链接复用，否则执行 npm install 并保存到缓存
+     */
+    private BuildOutcome installDependencies(File projectDir) throws IOException {
+        if (!vueBuildConfig.isDependencyCacheEnabled()) {
+            // 关闭缓存前恢复的 node_modules 仍可能与模板共享文件
+            npmDependencyCache.prepareInstall(projectDir);
+            return executeNpmInstall(projectDir) ? BuildOutcome.INSTALLED : BuildOutcome.FAILED;
+        }
+        String key = npmDependencyCache.computeKey(projectDir);
+        if (npmDependencyCache.isInstalled(projectDir, key)) {
+            log.info("依赖未变化，跳过 npm install：{}", projectDir);
+            return BuildOutcome.REUSED;
+        }
+        if (npmDependencyCache.restore(projectDir, key)) {
+            log.info("命中依赖缓存，跳过 npm install：{}", projectDir);
+            return BuildOutcome.CACHE_HIT;
+        }
+        npmDependencyCache.prepareInstall(projectDir);
+        if (!executeNpmInstall(projectDir)) {
+            return BuildOutcome.FAILED;
+        }
+        npmDependencyCache.store(projectDir, key);
+        return BuildOutcome.INSTALLED;
     }
 
     /**
@@ -74,8 +247,12 @@ public class VueProjectBuilder {
      */
     private boolean executeNpmInstall(File projectDir) {
         log.info("执行 npm install...");
-        String command = String.format("%s install", buildCommand("npm"));
-        return executeCommand(projectDir, command, 300); // 5分钟超时
+        String command = String.format("%s install --prefer-offline --no-audit --no-fund", buildCommand("npm"));
+        if (vueBuildConfig.isDependencyCacheEnabled()) {
+            // 共享 npm 下载缓存，相同版本的包只下载一次
+            command += " --cache " + npmDependencyCache.getNpmCacheDir();
+        }
+        return executeCommand(projectDir, command, vueBuildConfig.getInstallTimeout());
     }
 
     /**
@@ -84,7 +261,7 @@ public class VueProjectBuilder {
     private boolean executeNpmBuild(File projectDir) {
         log.info("执行 npm run build...");
         String command = String.format("%s run build", buildCommand("npm"));
-        return executeCommand(projectDir, command, 180); // 3分钟超时
+        return executeCommand(projectDir, command, vueBuildConfig.getBuildTimeout());
     }
 
     /**
@@ -112,12 +289,12 @@ public class VueProjectBuilder {
     /**
      * 执行命令
      *
-     * @param workingDir     工作目录
-     * @param command        命令字符串
-     * @param timeoutSeconds 超时时间（秒）
+     * @param workingDir 工作目录
+     * @param command    命令字符串
+     * @param timeout    超时时间
      * @return 是否执行成功
      */
-    private boolean executeCommand(File workingDir, String command, int timeoutSeconds) {
+    private boolean executeCommand(File workingDir, String command, Duration timeout) {
         try {
             log.info("在目录 {} 中执行命令: {}", workingDir.getAbsolutePath(), command);
             Process process = RuntimeUtil.exec(
@@ -126,9 +303,9 @@ public class VueProjectBuilder {
                     command.split("\\s+") // 命令分割为数组
             );
             // 等待进程完成，设置超时
-            boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+            boolean finished = process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
             if (!finished) {
-                log.error("命令执行超时（{}秒），强制终止进程", timeoutSeconds);
+                log.error("命令执行超时（{}秒），强制终止进程", timeout.toSeconds());
                 process.destroyForcibly();
                 return false;
             }
@@ -146,4 +323,79 @@ public class VueProjectBuilder {
         }
     }
 
+    /**
+     * 构建结果及依赖来源
+     */
+    private enum BuildOutcome {
+
+        FAILED("failed", "none"),
+
+        /**
+         * 源码未变化，跳过构建
+         */
+        UNCHANGED("unchanged", "none"),
+
+        /**
+         * 项目中已安装的依赖未变化
+         */
+        REUSED("success", "reused"),
+
+        /**
+         * 命中依赖缓存
+         */
+        CACHE_HIT("success", "cache_hit"),
+
+        /**
+         * 执行了 npm install
+         */
+        INSTALLED("success", "installed");
+
+        private final String outcome;
+
+        private final String dependencies;
+
+        BuildOutcome(String outcome, String dependencies) {
+            this.outcome = outcome;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * 提交到构建线程池的任务，停机时可从 shutdownNow 返回的任务中取回构建请求
+     */
+    private final class BuildRunnable implements Runnable {
+
+        private final BuildTask task;
+
+        private BuildRunnable(BuildTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            VueProjectBuilder.this.run(task);
+        }
+    }
+
+    /**
+     * 一次构建请求
+     */
+    private static final class BuildTask {
+
+        private final String key;
+
+        private final String projectPath;
+
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        /**
+         * 是否已开始执行（在 latestBuilds 锁内修改）
+         */
+        private boolean started;
+
+        private BuildTask(String key, String projectPath) {
+            this.key = key;
+            this.projectPath = projectPath;
+        }
+    }
 }
@@ -8,6 +8,7 @@ import com.easen.aicode.ai.model.message.*;
 import com.easen.aicode.ai.tools.BaseTool;
 import com.easen.aicode.ai.tools.ToolManager;
 import com.easen.aicode.constant.AppConstant;
+import com.easen.aicode.core.buffer.GenerationBuffer;
 import com.easen.aicode.core.builder.VueProjectBuilder;
 import com.easen.aicode.model.entity.User;
 import com.easen.aicode.model.enums.ChatHistoryMessageTypeEnum;
@@ -35,57 +36,57 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按消息类型直接分发（进程内不做 JSON 编解码），并重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
-     * @return 处理后的流
+     * @param buffer             本次生成的内容缓冲区，写入后端记忆格式的内容
+     * @return 处理后的流（AiResponseMessage）
      */
-    public Flux<String> handle(Flux<String> originFlux,
-                               ChatHistoryService chatHistoryService,
-                               long appId, User loginUser) {
-        // 收集数据用于生成后端记忆格式
-        StringBuilder chatHistoryStringBuilder = new StringBuilder();
+    public Flux<StreamMessage> handle(Flux<StreamMessage> originFlux,
+                                      ChatHistoryService chatHistoryService,
+                                      long appId, User loginUser, GenerationBuffer buffer) {
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
-                })
-                .filter(StrUtil::isNotEmpty) // 过滤空字串
+                // 处理每个消息，返回 null 的消息不输出
+                .mapNotNull(message -> handleStreamMessage(message, buffer, seenToolIds))
                 .doOnComplete(() -> {
                     //判断消息状态
                     // 流式响应完成后，添加 AI 消息到对话历史
-                    String aiResponse = chatHistoryStringBuilder.toString();
+                    String aiResponse = buffer.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId(), ChatHistoryStatusEnum.NORMAL.getValue(),null);
                 })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
                     chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId(),ChatHistoryStatusEnum.AI_INTERRUPTED.getValue(),null);
+                })
+                .doOnCancel(() -> {
+                    // 生成管道被中止（客户端断开），保存已生成的部分内容
+                    String partialResponse = buffer.toString();
+                    if (StrUtil.isNotBlank(partialResponse)) {
+                        chatHistoryService.addChatMessage(appId, partialResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId(), ChatHistoryStatusEnum.USER_INTERRUPTED.getValue(), null);
+                    }
+                    log.info("生成已中止，保存部分AI响应: appId={}, userId={}, contentLength={}", appId, loginUser.getId(), partialResponse.length());
                 });
     }
 
     /**
-     * 解析并收集 TokenStream 数据
+     * 处理并收集 TokenStream 消息
+     *
+     * @return 需要输出给前端的消息，为空表示不输出
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
-                String data = aiMessage.getData();
+    private StreamMessage handleStreamMessage(StreamMessage streamMessage, GenerationBuffer buffer, Set<String> seenToolIds) {
+        switch (streamMessage) {
+            case AiResponseMessage aiMessage -> {
                 // 直接拼接响应
-                chatHistoryStringBuilder.append(data);
-                return data;
+                buffer.append(aiMessage.getData());
+                return aiMessage;
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
                 String toolName = toolRequestMessage.getName();
                 // 检查是否是第一次看到这个工具 ID
@@ -95,14 +96,13 @@ public class JsonMessageStreamHandler {
                     // 根据工具名称获取工具实例
                     BaseTool tool = toolManager.getTool(toolName);
                     // 返回格式化的工具调用信息
-                    return tool.generateToolRequestResponse();
+                    return new AiResponseMessage(tool.generateToolRequestResponse());
                 } else {
-                    // 不是第一次调用这个工具，直接返回空
-                    return "";
+                    // 不是第一次调用这个工具，不输出
+                    return null;
                 }
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+            case ToolExecutedMessage toolExecutedMessage -> {
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 // 根据工具名称获取工具实例
                 String toolName = toolExecutedMessage.getName();
@@ -110,12 +110,16 @@ public class JsonMessageStreamHandler {
                 String result = tool.generateToolExecutedResult(jsonObject);
                 // 输出前端和要持久化的内容
                 String output = String.format("\n\n%s\n\n", result);
-                chatHistoryStringBuilder.append(output);
-                return output;
+                buffer.append(output);
+                return new AiResponseMessage(output);
+            }
+            case BuildStatusMessage buildStatusMessage -> {
+                // 构建状态直接透传给前端，不写入对话历史
+                return buildStatusMessage;
             }
             default -> {
-                log.error("不支持的消息类型: {}", typeEnum);
-                return "";
+                log.error("不支持的消息类型: {}", streamMessage.getType());
+                return null;
             }
         }
     }
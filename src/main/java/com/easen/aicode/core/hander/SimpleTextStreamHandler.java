@@ -1,5 +1,8 @@
 package com.easen.aicode.core.hander;
 
+import cn.hutool.core.util.StrUtil;
+import com.easen.aicode.ai.model.message.StreamMessage;
+import com.easen.aicode.core.buffer.GenerationBuffer;
 import com.easen.aicode.model.entity.User;
 import com.easen.aicode.model.enums.ChatHistoryMessageTypeEnum;
 import com.easen.aicode.model.enums.ChatHistoryStatusEnum;
@@ -7,8 +10,6 @@ import com.easen.aicode.service.ChatHistoryService;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-
 /**
  * 简单文本流处理器
  * 处理 HTML 和 MULTI_FILE 类型的流式响应
@@ -18,27 +19,22 @@ public class SimpleTextStreamHandler {
 
     /**
      * 处理传统流（HTML, MULTI_FILE）
-     * 直接收集完整的文本响应
+     * 原始文本已由生成端写入共享缓冲区，完成后直接读取保存
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
+     * @param buffer             本次生成的内容缓冲区
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<StreamMessage> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
-                               long appId, User loginUser) {
-        StringBuilder aiResponseBuilder = new StringBuilder();
+                               long appId, User loginUser, GenerationBuffer buffer) {
         return originFlux
-                .map(chunk -> {
-                    // 收集AI响应内容
-                    aiResponseBuilder.append(chunk);
-                    return chunk;
-                })
                 .doOnComplete(() -> {
                     // 流式响应正常完成，添加AI消息到对话历史
-                    String aiResponse = aiResponseBuilder.toString();
+                    String aiResponse = buffer.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId(), ChatHistoryStatusEnum.NORMAL.getValue(), null);
                     log.info("流正常完成，保存完整AI响应到数据库: appId={}, userId={}, contentLength={}", appId, loginUser.getId(), aiResponse.length());
                 })
@@ -46,6 +42,14 @@ public class SimpleTextStreamHandler {
                     String errorMessage = "AI回复失败: " + error.getMessage();
                     log.error("AI回复失败，保存错误信息到数据库: appId={}, userId={}, error={}", appId, loginUser.getId(), error.getMessage());
                     chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId(),ChatHistoryStatusEnum.AI_INTERRUPTED.getValue(),null);
+                })
+                .doOnCancel(() -> {
+                    // 生成管道被中止（客户端断开），保存已生成的部分内容
+                    String partialResponse = buffer.toString();
+                    if (StrUtil.isNotBlank(partialResponse)) {
+                        chatHistoryService.addChatMessage(appId, partialResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId(), ChatHistoryStatusEnum.USER_INTERRUPTED.getValue(), null);
+                    }
+                    log.info("生成已中止，保存部分AI响应: appId={}, userId={}, contentLength={}", appId, loginUser.getId(), partialResponse.length());
                 });
     }
 }
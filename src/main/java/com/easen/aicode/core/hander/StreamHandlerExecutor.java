@@ -1,5 +1,7 @@
 package com.easen.aicode.core.hander;
 
+import com.easen.aicode.ai.model.message.StreamMessage;
+import com.easen.aicode.core.buffer.GenerationBuffer;
 import com.easen.aicode.model.entity.User;
 import com.easen.aicode.model.enums.CodeGenTypeEnum;
 import com.easen.aicode.service.ChatHistoryService;
@@ -11,8 +13,9 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
- * 2. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 1. 纯文本响应流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
+ * 2. 包含工具调用的消息流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 处理后统一输出 AiResponseMessage，由 Controller 在 SSE 出口一次性序列化
  */
 @Slf4j
 @Component
@@ -21,6 +24,9 @@ public class StreamHandlerExecutor {
     @Resource
     private JsonMessageStreamHandler jsonMessageStreamHandler;
 
+    @Resource
+    private StreamMessageCoalescer streamMessageCoalescer;
+
     /**
      * 创建流处理器并处理聊天历史记录
      *
@@ -29,16 +35,19 @@ public class StreamHandlerExecutor {
      * @param appId              应用ID
      * @param loginUser          登录用户
      * @param codeGenType        代码生成类型
+     * @param buffer             本次生成的内容缓冲区
      * @return 处理后的流
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
+    public Flux<StreamMessage> doExecute(Flux<StreamMessage> originFlux,
                                   ChatHistoryService chatHistoryService,
-                                  long appId, User loginUser, CodeGenTypeEnum codeGenType) {
+                                  long appId, User loginUser, CodeGenTypeEnum codeGenType, GenerationBuffer buffer) {
+        // 先合并细碎的 token，减少后续处理和 SSE 推送的次数
+        Flux<StreamMessage> coalescedFlux = streamMessageCoalescer.coalesce(originFlux);
         return switch (codeGenType) {
             case VUE_PROJECT -> // 使用注入的组件实例
-                    jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser);
+                    jsonMessageStreamHandler.handle(coalescedFlux, chatHistoryService, appId, loginUser, buffer);
             case HTML, MULTI_FILE -> // 简单文本处理器不需要依赖注入
-                    new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser);
+                    new SimpleTextStreamHandler().handle(coalescedFlux, chatHistoryService, appId, loginUser, buffer);
         };
     }
 }
@@ -0,0 +1,146 @@
+package com.easen.aicode.core.hander;
+
+import com.easen.aicode.ai.model.message.AiResponseMessage;
+import com.easen.aicode.ai.model.message.StreamMessage;
+import com.easen.aicode.config.StreamCoalesceConfig;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式消息合并器
+ * 将连续的 AiResponseMessage 按时间窗口或字符数（先到为准）合并为一帧，
+ * 工具调用等其他类型的消息会先推送已合并的内容，再立即透传，流结束或出错时同样先推送剩余内容
+ */
+@Component
+public class StreamMessageCoalescer {
+
+    @Resource
+    private StreamCoalesceConfig streamCoalesceConfig;
+
+    /**
+     * 合并流式消息
+     *
+     * @param source 原始消息流
+     * @return 合并后的消息流
+     */
+    public Flux<StreamMessage> coalesce(Flux<StreamMessage> source) {
+        if (!streamCoalesceConfig.isEnabled()) {
+            return source;
+        }
+        long intervalMs = streamCoalesceConfig.getIntervalMs();
+        int maxFrameChars = streamCoalesceConfig.getMaxFrameChars();
+        return Flux.create((FluxSink<StreamMessage> sink) -> {
+            CoalescingState state = new CoalescingState(sink, intervalMs, maxFrameChars, Schedulers.parallel());
+            Disposable upstream = source.subscribe(state::onNext, state::onError, state::onComplete);
+            // 下游取消时同步取消上游，保证生成任务能感知到取消
+            sink.onDispose(() -> {
+                state.dispose();
+                upstream.dispose();
+            });
+        });
+    }
+
+    /**
+     * 单个流的合并状态，上游线程与定时线程通过锁互斥，保证输出顺序
+     */
+    private static class CoalescingState {
+
+        private final FluxSink<StreamMessage> sink;
+
+        private final long intervalMs;
+
+        private final int maxFrameChars;
+
+        private final Scheduler scheduler;
+
+        private final StringBuilder pending = new StringBuilder();
+
+        private Disposable flushTask;
+
+        private boolean done;
+
+        CoalescingState(FluxSink<StreamMessage> sink, long intervalMs, int maxFrameChars, Scheduler scheduler) {
+            this.sink = sink;
+            this.intervalMs = intervalMs;
+            this.maxFrameChars = maxFrameChars;
+            this.scheduler = scheduler;
+        }
+
+        synchronized void onNext(StreamMessage message) {
+            if (done) {
+                return;
+            }
+            if (!(message instanceof AiResponseMessage aiResponseMessage)) {
+                // 工具调用等消息立即推送
+                flush();
+                sink.next(message);
+                return;
+            }
+            String data = aiResponseMessage.getData();
+            if (data == null || data.isEmpty()) {
+                return;
+            }
+            pending.append(data);
+            if (pending.length() >= maxFrameChars) {
+                flush();
+            } else if (flushTask == null) {
+                flushTask = scheduler.schedule(this::onTimer, intervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void onError(Throwable error) {
+            if (done) {
+                return;
+            }
+            flush();
+            done = true;
+            sink.error(error);
+        }
+
+        synchronized void onComplete() {
+            if (done) {
+                return;
+            }
+            flush();
+            done = true;
+            sink.complete();
+        }
+
+        synchronized void dispose() {
+            done = true;
+            cancelFlushTask();
+            pending.setLength(0);
+        }
+
+        private synchronized void onTimer() {
+            flushTask = null;
+            if (!done) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            cancelFlushTask();
+            if (pending.isEmpty()) {
+                return;
+            }
+            String frame = pending.toString();
+            pending.setLength(0);
+            sink.next(new AiResponseMessage(frame));
+        }
+
+        private void cancelFlushTask() {
+            if (flushTask != null) {
+                flushTask.dispose();
+                flushTask = null;
+            }
+        }
+    }
+}
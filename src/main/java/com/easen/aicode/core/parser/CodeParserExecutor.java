@@ -4,6 +4,8 @@ import com.easen.aicode.exception.BusinessException;
 import com.easen.aicode.exception.ErrorCode;
 import com.easen.aicode.model.enums.CodeGenTypeEnum;
 
+import java.util.Map;
+
 /**
  * 代码解析执行器
  * 根据代码生成类型执行相应的解析逻辑
@@ -15,6 +17,17 @@ public class CodeParserExecutor {
 
     private static final MultiFileCodeParser multiFileCodeParser = new MultiFileCodeParser();
 
+    private static final String HTML_FILE_NAME = "index.html";
+
+    private static final Map<String, String> HTML_LANGUAGE_FILES = Map.of("html", HTML_FILE_NAME);
+
+    private static final Map<String, String> MULTI_FILE_LANGUAGE_FILES = Map.of(
+            "html", HTML_FILE_NAME,
+            "css", "style.css",
+            "js", "script.js",
+            "javascript", "script.js"
+    );
+
     /**
      * 执行代码解析
      *
@@ -29,4 +42,20 @@ public class CodeParserExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 创建流式代码解析器
+     *
+     * @param codeGenType 代码生成类型
+     * @param handler     代码块回调
+     * @return 流式代码解析器
+     */
+    public static StreamingCodeParser createStreamingParser(CodeGenTypeEnum codeGenType, StreamingCodeParser.CodeBlockHandler handler) {
+        return switch (codeGenType) {
+            // 单文件模式下没有 html 代码块时，整段输出作为 HTML
+            case HTML -> new StreamingCodeParser(HTML_LANGUAGE_FILES, HTML_FILE_NAME, handler);
+            case MULTI_FILE -> new StreamingCodeParser(MULTI_FILE_LANGUAGE_FILES, null, handler);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
 }
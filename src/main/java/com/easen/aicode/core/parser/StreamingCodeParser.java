@@ -0,0 +1,309 @@
+package com.easen.aicode.core.parser;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 流式代码解析器（增量状态机）
+ * 逐块接收 AI 输出，识别 ```html / ```css / ```js 围栏代码块，并把代码内容实时推送给 {@link CodeBlockHandler}，
+ * 不需要在流结束后再对完整文本做正则回溯扫描。
+ * <p>
+ * 解析语义与 {@link HtmlCodeParser}、{@link MultiFileCodeParser} 保持一致：
+ * 1. 每个目标文件只取第一个代码块，后续同类代码块忽略
+ * 2. 代码块内容去除首尾空白
+ * 3. 配置了兜底文件时，如果整个输出中没有出现对应代码块或该代码块为空，则把完整输出作为该文件内容
+ * 4. 语言标识只能由字母、数字和 _.+- 组成，后面可以有空白；出现反引号等其他字符说明是行内代码，不是代码块起始
+ * 不同之处：流被截断导致代码块未闭合时，保留已接收到的内容，而不是整块丢弃
+ * <p>
+ * 非线程安全，每次生成创建一个实例
+ */
+public class StreamingCodeParser {
+
+    private static final String FENCE = "```";
+
+    /**
+     * 围栏信息行（语言标识）的最大长度，超过则认为不是代码块起始
+     */
+    private static final int MAX_FENCE_INFO_LENGTH = 32;
+
+    /**
+     * 代码块回调
+     */
+    public interface CodeBlockHandler {
+
+        /**
+         * 代码块开始
+         *
+         * @param fileName 目标文件名
+         */
+        void onBlockStart(String fileName);
+
+        /**
+         * 代码块内容（已去除首尾空白，可能被多次调用）
+         *
+         * @param fileName 目标文件名
+         * @param content  内容片段
+         */
+        void onBlockContent(String fileName, CharSequence content);
+
+        /**
+         * 代码块结束
+         *
+         * @param fileName 目标文件名
+         */
+        void onBlockEnd(String fileName);
+    }
+
+    private enum State {
+        /**
+         * 代码块之外的普通文本
+         */
+        TEXT,
+        /**
+         * 读取 ``` 之后的语言标识
+         */
+        FENCE_INFO,
+        /**
+         * 代码块内部
+         */
+        CODE
+    }
+
+    /**
+     * 语言标识 -> 目标文件名
+     */
+    private final Map<String, String> languageFileMap;
+
+    /**
+     * 兜底文件名，可为空
+     */
+    private final String fallbackFileName;
+
+    private final CodeBlockHandler handler;
+
+    /**
+     * 已经开始写入过的文件，保证每个文件只取第一个代码块
+     */
+    private final Set<String> startedFiles = new HashSet<>();
+
+    /**
+     * 兜底内容收集器，兜底文件对应的代码块输出了非空内容后才释放（空代码块仍按兜底处理，与 HtmlCodeParser 一致）
+     */
+    private StringBuilder fallbackContent;
+
+    private final StringBuilder fenceInfo = new StringBuilder();
+
+    /**
+     * 暂存的代码块尾部空白，遇到非空白字符才真正输出，以实现去除尾部空白
+     */
+    private final StringBuilder pendingWhitespace = new StringBuilder();
+
+    /**
+     * 单次 feed 的输出缓冲，每个 chunk 只回调一次
+     */
+    private final StringBuilder output = new StringBuilder();
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续反引号计数（可能跨 chunk）
+     */
+    private int backticks;
+
+    /**
+     * 当前代码块的目标文件，为空表示当前代码块需要跳过
+     */
+    private String currentFile;
+
+    /**
+     * 是否仍处于代码块开头（用于去除首部空白）
+     */
+    private boolean leading;
+
+    private boolean finished;
+
+    /**
+     * @param languageFileMap  语言标识（小写）到目标文件名的映射
+     * @param fallbackFileName 兜底文件名，为空表示不需要兜底
+     * @param handler          代码块回调
+     */
+    public StreamingCodeParser(Map<String, String> languageFileMap, String fallbackFileName, CodeBlockHandler handler) {
+        this.languageFileMap = languageFileMap;
+        this.fallbackFileName = fallbackFileName;
+        this.handler = handler;
+        this.fallbackContent = fallbackFileName != null ? new StringBuilder() : null;
+    }
+
+    /**
+     * 输入一段流式内容
+     *
+     * @param chunk 内容片段
+     */
+    public void feed(CharSequence chunk) {
+        if (finished) {
+            throw new IllegalStateException("解析器已结束");
+        }
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        if (fallbackContent != null) {
+            fallbackContent.append(chunk);
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+                case TEXT -> handleText(c);
+                case FENCE_INFO -> handleFenceInfo(c);
+                case CODE -> handleCode(c);
+            }
+        }
+        flushOutput();
+    }
+
+    /**
+     * 流结束，收尾未闭合的代码块并处理兜底文件
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (state == State.CODE && currentFile != null) {
+            // 末尾残留的反引号属于代码内容
+            for (int i = 0; i < backticks; i++) {
+                emit('`');
+            }
+            flushOutput();
+            handler.onBlockEnd(currentFile);
+        }
+        currentFile = null;
+        if (fallbackContent != null) {
+            // 没有出现兜底文件的代码块，或者该代码块为空
+            String content = fallbackContent.toString().trim();
+            fallbackContent = null;
+            if (!content.isEmpty()) {
+                startedFiles.add(fallbackFileName);
+                handler.onBlockStart(fallbackFileName);
+                handler.onBlockContent(fallbackFileName, content);
+                handler.onBlockEnd(fallbackFileName);
+            }
+        }
+    }
+
+    private void handleText(char c) {
+        if (c == '`') {
+            backticks++;
+            if (backticks == FENCE.length()) {
+                backticks = 0;
+                fenceInfo.setLength(0);
+                state = State.FENCE_INFO;
+            }
+        } else {
+            backticks = 0;
+        }
+    }
+
+    private void handleFenceInfo(char c) {
+        if (c == '\n') {
+            startBlock(fenceInfo.toString().trim().toLowerCase(Locale.ROOT));
+            return;
+        }
+        if (!isFenceInfoChar(c) || fenceInfo.length() >= MAX_FENCE_INFO_LENGTH) {
+            // 不是代码块起始（如 ```html``` 这样的行内代码），回到普通文本；
+            // 当前反引号不计数，行内代码剩余的闭合反引号不足三个，不会被当成新的围栏
+            backticks = 0;
+            state = State.TEXT;
+            return;
+        }
+        fenceInfo.append(c);
+    }
+
+    /**
+     * 语言标识允许的字符：[\w.+-]，之后只能是空白
+     */
+    private boolean isFenceInfoChar(char c) {
+        if (c <= ' ') {
+            return true;
+        }
+        boolean word = Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '+' || c == '-';
+        // 语言标识之后出现空白，再出现非空白字符说明是普通文本
+        boolean afterWhitespace = !fenceInfo.isEmpty() && fenceInfo.charAt(fenceInfo.length() - 1) <= ' '
+                && !fenceInfo.toString().isBlank();
+        return word && !afterWhitespace;
+    }
+
+    private void startBlock(String language) {
+        String fileName = languageFileMap.get(language);
+        if (fileName != null && startedFiles.add(fileName)) {
+            currentFile = fileName;
+            handler.onBlockStart(fileName);
+        } else {
+            // 未知语言或重复代码块，跳过直到闭合
+            currentFile = null;
+        }
+        leading = true;
+        pendingWhitespace.setLength(0);
+        state = State.CODE;
+    }
+
+    private void handleCode(char c) {
+        if (c == '`') {
+            backticks++;
+            if (backticks == FENCE.length()) {
+                endBlock();
+            }
+            return;
+        }
+        // 不足三个的反引号属于代码内容
+        for (int i = 0; i < backticks; i++) {
+            emit('`');
+        }
+        backticks = 0;
+        emit(c);
+    }
+
+    private void endBlock() {
+        if (currentFile != null) {
+            flushOutput();
+            handler.onBlockEnd(currentFile);
+        }
+        currentFile = null;
+        backticks = 0;
+        pendingWhitespace.setLength(0);
+        state = State.TEXT;
+    }
+
+    private void emit(char c) {
+        if (currentFile == null) {
+            return;
+        }
+        // 与 String.trim() 的空白定义保持一致
+        if (c <= ' ') {
+            if (!leading) {
+                pendingWhitespace.append(c);
+            }
+            return;
+        }
+        leading = false;
+        if (!pendingWhitespace.isEmpty()) {
+            output.append(pendingWhitespace);
+            pendingWhitespace.setLength(0);
+        }
+        output.append(c);
+    }
+
+    private void flushOutput() {
+        if (output.isEmpty() || currentFile == null) {
+            output.setLength(0);
+            return;
+        }
+        if (currentFile.equals(fallbackFileName)) {
+            // 目标代码块已有非空内容，不再需要兜底内容
+            fallbackContent = null;
+        }
+        handler.onBlockContent(currentFile, output.toString());
+        output.setLength(0);
+    }
+}
@@ -33,4 +33,18 @@ public class CodeFileSaverExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 创建流式代码保存器
+     *
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @return 流式代码保存器
+     */
+    public static StreamingCodeFileSaver createStreamingSaver(CodeGenTypeEnum codeGenType, Long appId) {
+        return switch (codeGenType) {
+            case HTML, MULTI_FILE -> new StreamingCodeFileSaver(codeGenType, appId);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
 }
@@ -0,0 +1,199 @@
+package com.easen.aicode.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.easen.aicode.constant.AppConstant;
+import com.easen.aicode.core.parser.StreamingCodeParser;
+import com.easen.aicode.exception.BusinessException;
+import com.easen.aicode.exception.ErrorCode;
+import com.easen.aicode.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 流式代码文件保存器
+ * 配合 {@link StreamingCodeParser} 使用，代码块内容到达即写入目标目录下的临时文件，
+ * 生成完成后 {@link #commit()} 原子替换为正式文件，失败或取消时 {@link #abort()} 清理临时文件，不会覆盖上一次的生成结果
+ * <p>
+ * 非线程安全，每次生成创建一个实例
+ */
+@Slf4j
+public class StreamingCodeFileSaver implements StreamingCodeParser.CodeBlockHandler {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 必须存在的入口文件
+     */
+    private static final String INDEX_FILE_NAME = "index.html";
+
+    private final String baseDirPath;
+
+    /**
+     * 文件名 -> 临时文件（按代码块出现顺序）
+     */
+    private final Map<String, Path> tempFiles = new LinkedHashMap<>();
+
+    /**
+     * 文件名 -> 已写入字符数
+     */
+    private final Map<String, Long> writtenChars = new LinkedHashMap<>();
+
+    private Writer currentWriter;
+
+    /**
+     * 写入过程中出现的异常，不中断生成流，在提交时统一处理
+     */
+    private IOException failure;
+
+    private boolean closed;
+
+    public StreamingCodeFileSaver(CodeGenTypeEnum codeGenType, Long appId) {
+        String uniqueDirName = StrUtil.format("{}_{}", codeGenType.getValue(), appId);
+        this.baseDirPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + uniqueDirName;
+    }
+
+    @Override
+    public void onBlockStart(String fileName) {
+        if (closed || failure != null) {
+            return;
+        }
+        try {
+            closeCurrentWriter();
+            FileUtil.mkdir(baseDirPath);
+            Path tempFile = Path.of(baseDirPath, fileName + TEMP_SUFFIX);
+            tempFiles.put(fileName, tempFile);
+            writtenChars.put(fileName, 0L);
+            currentWriter = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            fail(fileName, e);
+        }
+    }
+
+    @Override
+    public void onBlockContent(String fileName, CharSequence content) {
+        if (closed || failure != null || currentWriter == null) {
+            return;
+        }
+        try {
+            currentWriter.append(content);
+            writtenChars.merge(fileName, (long) content.length(), Long::sum);
+        } catch (IOException e) {
+            fail(fileName, e);
+        }
+    }
+
+    @Override
+    public void onBlockEnd(String fileName) {
+        if (closed || failure != null) {
+            return;
+        }
+        try {
+            closeCurrentWriter();
+        } catch (IOException e) {
+            fail(fileName, e);
+        }
+    }
+
+    /**
+     * 提交：将临时文件原子替换为正式文件
+     *
+     * @return 保存的目录
+     */
+    public File commit() {
+        if (closed) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码保存已结束");
+        }
+        try {
+            closeCurrentWriter();
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (failure != null) {
+            abort();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码文件写入失败: " + failure.getMessage());
+        }
+        if (writtenChars.getOrDefault(INDEX_FILE_NAME, 0L) == 0) {
+            abort();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "HTML代码内容不能为空");
+        }
+        closed = true;
+        try {
+            for (Map.Entry<String, Path> entry : tempFiles.entrySet()) {
+                Path tempFile = entry.getValue();
+                // 空代码块不生成文件，与 CodeFileSaverTemplate#writeToFile 保持一致
+                if (writtenChars.getOrDefault(entry.getKey(), 0L) == 0) {
+                    Files.deleteIfExists(tempFile);
+                    continue;
+                }
+                moveReplacing(tempFile, Path.of(baseDirPath, entry.getKey()));
+            }
+        } catch (IOException e) {
+            deleteTempFiles();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码文件保存失败: " + e.getMessage());
+        }
+        return new File(baseDirPath);
+    }
+
+    /**
+     * 放弃本次保存，清理临时文件（可重复调用）
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            closeCurrentWriter();
+        } catch (IOException e) {
+            log.warn("关闭临时文件失败: {}", e.getMessage());
+        }
+        deleteTempFiles();
+    }
+
+    private void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void closeCurrentWriter() throws IOException {
+        if (currentWriter != null) {
+            Writer writer = currentWriter;
+            currentWriter = null;
+            writer.close();
+        }
+    }
+
+    private void deleteTempFiles() {
+        for (Path tempFile : tempFiles.values()) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                log.warn("删除临时文件失败: {}", tempFile, e);
+            }
+        }
+    }
+
+    private void fail(String fileName, IOException e) {
+        log.error("写入代码文件失败: {}", fileName, e);
+        failure = e;
+        try {
+            closeCurrentWriter();
+        } catch (IOException ignored) {
+            // 已记录首个异常
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.easen.aicode.core.screenshot;
+
+/**
+ * 应用就绪信号策略
+ * 页面可以先把 window.__APP_READY__ 置为 false，渲染完成后置为 true；没有设置该变量的页面不等待
+ */
+public class AppSignalReadinessStrategy implements PageReadinessStrategy {
+
+    @Override
+    public String getName() {
+        return "app_signal";
+    }
+
+    @Override
+    public String getCheckScript() {
+        return "() => window.__APP_READY__ !== false";
+    }
+}
@@ -0,0 +1,39 @@
+package com.easen.aicode.core.screenshot;
+
+import java.time.Duration;
+
+/**
+ * 网络空闲就绪策略
+ * 已完成的资源请求数（Resource Timing）持续一段时间不再增加时认为网络空闲，覆盖页面加载后发起的接口请求和懒加载资源
+ */
+public class NetworkIdleReadinessStrategy implements PageReadinessStrategy {
+
+    private final Duration idleTime;
+
+    public NetworkIdleReadinessStrategy(Duration idleTime) {
+        this.idleTime = idleTime;
+    }
+
+    @Override
+    public String getName() {
+        return "network_idle";
+    }
+
+    @Override
+    public String getCheckScript() {
+        return """
+                (() => {
+                  let count = -1, since = 0;
+                  return now => {
+                    const current = performance.getEntriesByType('resource').length;
+                    if (current !== count) {
+                      count = current;
+                      since = now;
+                      return false;
+                    }
+                    return now - since >= %d;
+                  };
+                })()
+                """.formatted(idleTime.toMillis());
+    }
+}
@@ -0,0 +1,23 @@
+package com.easen.aicode.core.screenshot;
+
+/**
+ * 页面就绪策略接口
+ * <p>
+ * 就绪条件在浏览器内判断，所有策略的条件由 {@link PageReadinessWaiter} 合并到一个异步脚本中轮询，
+ * 整个等待过程只需要一次 WebDriver 调用
+ */
+public interface PageReadinessStrategy {
+
+    /**
+     * 策略名称，用于日志
+     */
+    String getName();
+
+    /**
+     * 创建就绪检查函数的 JS 表达式
+     * 表达式的值为函数 (now) => boolean，now 为 performance.now()，可以在闭包中保存多次检查之间的状态
+     *
+     * @return JS 表达式
+     */
+    String getCheckScript();
+}
@@ -0,0 +1,108 @@
+package com.easen.aicode.core.screenshot;
+
+import com.easen.aicode.config.ScreenshotConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 页面就绪等待器
+ * <p>
+ * 在浏览器内每 50ms 检查一次所有就绪条件，全部满足立即返回，超过最长等待时间也返回（不阻止截图）。
+ * 简单的静态页面通常在网络空闲时间（默认 300ms）后即可截图
+ */
+@Slf4j
+@Component
+public class PageReadinessWaiter {
+
+    /**
+     * 异步脚本：arguments[0] 为最长等待毫秒数，最后一个参数为回调，返回未满足的条件名称
+     */
+    private static final String WAIT_SCRIPT_TEMPLATE = """
+            const done = arguments[arguments.length - 1];
+            const timeout = arguments[0];
+            const checks = [%s];
+            const start = performance.now();
+            const poll = () => {
+              const now = performance.now();
+              const pending = checks
+                .filter(([, check]) => { try { return !check(now); } catch (e) { return false; } })
+                .map(([name]) => name);
+              if (pending.length === 0 || now - start >= timeout) {
+                done(pending);
+                return;
+              }
+              setTimeout(poll, 50);
+            };
+            poll();
+            """;
+
+    @Resource
+    private ScreenshotConfig screenshotConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private String waitScript;
+
+    @PostConstruct
+    public void init() {
+        List<PageReadinessStrategy> strategies = screenshotConfig.getReadiness().stream()
+                .distinct()
+                .map(this::createStrategy)
+                .toList();
+        String checks = strategies.stream()
+                .map(strategy -> "['" + strategy.getName() + "', " + strategy.getCheckScript().strip() + "]")
+                .collect(Collectors.joining(",\n"));
+        waitScript = WAIT_SCRIPT_TEMPLATE.formatted(checks);
+        log.info("截图就绪条件: {}", strategies.stream().map(PageReadinessStrategy::getName).toList());
+    }
+
+    /**
+     * 等待页面就绪
+     *
+     * @param webDriver 已打开页面的浏览器
+     */
+    public void await(WebDriver webDriver) {
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            Object pending = ((JavascriptExecutor) webDriver)
+                    .executeAsyncScript(waitScript, screenshotConfig.getReadinessTimeout().toMillis());
+            if (pending instanceof List<?> list && !list.isEmpty()) {
+                log.warn("等待页面就绪超时，未满足的条件: {}，继续截图", list);
+                outcome = "timeout";
+            } else {
+                outcome = "ready";
+            }
+        } catch (WebDriverException e) {
+            log.warn("等待页面就绪时出现异常，继续截图: {}", e.getMessage());
+            outcome = "error";
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("页面就绪等待结束: outcome={}, {}ms", outcome, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        Timer.builder("ai.screenshot.readiness")
+                .description("截图前等待页面就绪的耗时")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private PageReadinessStrategy createStrategy(ScreenshotConfig.ReadinessType type) {
+        return switch (type) {
+            case NETWORK_IDLE -> new NetworkIdleReadinessStrategy(screenshotConfig.getNetworkIdleTime());
+            case RESOURCES -> new ResourcesLoadedReadinessStrategy();
+            case APP_SIGNAL -> new AppSignalReadinessStrategy();
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package com.easen.aicode.core.screenshot;
+
+/**
+ * 资源加载就绪策略
+ * 文档加载完成，且图片（懒加载的除外）和 Web 字体都已加载完成
+ */
+public class ResourcesLoadedReadinessStrategy implements PageReadinessStrategy {
+
+    @Override
+    public String getName() {
+        return "resources";
+    }
+
+    @Override
+    public String getCheckScript() {
+        return """
+                () => document.readyState === 'complete'
+                  && Array.from(document.images).every(img => img.complete || img.loading === 'lazy')
+                  && (!document.fonts || document.fonts.status === 'loaded')
+                """;
+    }
+}
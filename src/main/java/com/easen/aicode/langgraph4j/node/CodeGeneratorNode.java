@@ -1,6 +1,7 @@
 package com.easen.aicode.langgraph4j.node;
 
 
+import com.easen.aicode.ai.model.message.StreamMessage;
 import com.easen.aicode.constant.AppConstant;
 import com.easen.aicode.core.AiCodeGeneratorFacade;
 import com.easen.aicode.langgraph4j.state.WorkflowContext;
@@ -34,7 +35,7 @@ public class CodeGeneratorNode {
             log.info("开始生成代码，类型: {} ({})", generationType.getValue(), generationType.getText());
             // 先使用固定的 appId (后续再整合到业务中)
             // 调用流式代码生成
-            Flux<String> codeStream = codeGeneratorFacade.generateAndSaveCodeStream(userMessage, generationType, context.getAppId(),context.getUserId());
+            Flux<StreamMessage> codeStream = codeGeneratorFacade.generateAndSaveCodeStream(userMessage, generationType, context.getAppId(),context.getUserId());
             // 同步等待流式输出完成
             codeStream.blockLast(Duration.ofMinutes(10)); // 最多等待 10 分钟
             // 根据类型设置生成目录
@@ -0,0 +1,433 @@
+package com.easen.aicode.manager;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.StrUtil;
+import com.easen.aicode.config.ChatHistoryWriteConfig;
+import com.easen.aicode.mapper.ChatHistoryMapper;
+import com.easen.aicode.model.entity.ChatHistory;
+import com.easen.aicode.service.ChatHistoryBlobService;
+import com.mybatisflex.core.BaseMapper;
+import com.mybatisflex.core.keygen.IKeyGenerator;
+import com.mybatisflex.core.keygen.KeyGeneratorFactory;
+import com.mybatisflex.core.keygen.KeyGenerators;
+import com.mybatisflex.core.row.Db;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对话历史异步批量写入器（write-behind）
+ * <p>
+ * 消息先进入内存队列，由后台线程攒批后跨应用合并写入（配合 rewriteBatchedStatements 生成多行 INSERT），
+ * 调用方不再同步等待数据库。id 和创建时间在入队时预先生成，保证游标顺序和记忆水位线与最终落库的数据一致。
+ * <p>
+ * 尚未落库的消息按应用保存在待写入列表中，同一应用的查询会合并这部分数据，保证写后可读；
+ * 队列满时直接同步写入，停机时写完队列中剩余的消息。
+ * 写入失败的消息不会丢弃：继续保留在待写入列表中，按指数退避重试直到落库；停机时仍未写入的消息记录错误日志和失败计数。
+ * 超长消息在写入前压缩转存到 chat_history_blob
+ */
+@Slf4j
+@Component
+public class ChatHistoryBatchWriter {
+
+    @Resource
+    private ChatHistoryWriteConfig chatHistoryWriteConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ChatHistoryBlobService chatHistoryBlobService;
+
+    /**
+     * 与实体 @Id 注解使用同一个雪花 ID 生成器
+     */
+    private final IKeyGenerator idGenerator = KeyGeneratorFactory.getKeyGenerator(KeyGenerators.snowFlakeId);
+
+    /**
+     * 待写入队列
+     */
+    private BlockingQueue<ChatHistory> queue;
+
+    /**
+     * 已入队但尚未落库的消息：appId -> id -> 消息
+     */
+    private final Map<Long, Map<Long, ChatHistory>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 保证同一时刻只有一个线程在写批次（后台线程与 flush 调用方）
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * 写入失败、等待重试的消息
+     */
+    private final DelayQueue<RetryEntry> retryQueue = new DelayQueue<>();
+
+    /**
+     * 消息 id -> 已失败次数
+     */
+    private final Map<Long, Integer> failedAttempts = new ConcurrentHashMap<>();
+
+    /**
+     * 待写入消息落库或转入重试时通知 flush(appId) 的等待方
+     */
+    private final ReentrantLock settleLock = new ReentrantLock();
+
+    private final Condition settled = settleLock.newCondition();
+
+    private Timer batchTimer;
+
+    private Counter failedCounter;
+
+    private Thread drainThread;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(chatHistoryWriteConfig.getQueueCapacity());
+        batchTimer = Timer.builder("ai.chat.history.write.batch")
+                .description("对话历史批量写入耗时")
+                .register(meterRegistry);
+        Gauge.builder("ai.chat.history.write.pending", queue, Collection::size)
+                .description("等待写入的对话历史条数")
+                .register(meterRegistry);
+        Gauge.builder("ai.chat.history.write.retrying", retryQueue, Collection::size)
+                .description("写入失败、等待重试的对话历史条数")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("ai.chat.history.write.failed")
+                .description("对话历史写入失败次数（按行，每次重试失败都计数）")
+                .register(meterRegistry);
+        if (!chatHistoryWriteConfig.isEnabled()) {
+            return;
+        }
+        running = true;
+        drainThread = Thread.ofVirtual().name("chat-history-writer").start(this::drainLoop);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        if (drainThread != null) {
+            drainThread.interrupt();
+            try {
+                drainThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 写完剩余消息再退出（包括等待重试的消息）
+        flush();
+        if (!retryQueue.isEmpty()) {
+            log.error("停机时仍有 {} 条对话历史写入失败，未能落库", retryQueue.size());
+        }
+        log.info("对话历史写入器已关闭");
+    }
+
+    /**
+     * 写入一组消息（同一条逻辑消息的文本和图片行），预先生成 id 和创建时间
+     *
+     * @param rows 待写入的行
+     * @return 是否写入成功（异步模式下为是否已入队或同步写入成功）
+     */
+    public boolean write(List<ChatHistory> rows) {
+        // 与数据库 datetime(0) 精度一致，避免落库前后排序不同
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (ChatHistory row : rows) {
+            if (row.getId() == null) {
+                row.setId((Long) idGenerator.generate(row, "id"));
+            }
+            row.setCreateTime(now);
+            row.setUpdateTime(now);
+        }
+        if (!running) {
+            return insertBatch(rows.stream().map(this::offload).toList());
+        }
+        rows.forEach(row -> pending.computeIfAbsent(row.getAppId(), key -> new ConcurrentHashMap<>()).put(row.getId(), row));
+        for (int i = 0; i < rows.size(); i++) {
+            if (!queue.offer(rows.get(i))) {
+                // 队列已满，剩余行同步写入，失败的行进入重试，保证不丢消息
+                List<ChatHistory> overflow = new ArrayList<>(rows.subList(i, rows.size()));
+                log.warn("对话历史写入队列已满，同步写入 {} 条", overflow.size());
+                writeBatch(overflow);
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取某应用尚未落库的消息，按 (createTime, id) 倒序
+     */
+    public List<ChatHistory> getPending(Long appId) {
+        Map<Long, ChatHistory> appPending = pending.get(appId);
+        if (appPending == null || appPending.isEmpty()) {
+            return List.of();
+        }
+        List<ChatHistory> rows = new ArrayList<>(appPending.values());
+        rows.sort(Comparator.comparing(ChatHistory::getCreateTime).thenComparing(ChatHistory::getId).reversed());
+        return rows;
+    }
+
+    /**
+     * 立即写入某应用尚未落库的消息（删除、改状态等需要直接操作数据库的场景先调用）
+     * 后台线程可能正持有该应用的一批消息，需要等这批写完；退避中等待重试的消息不等待
+     */
+    public void flush(Long appId) {
+        flushQueue();
+        long remaining = TimeUnit.SECONDS.toNanos(5);
+        settleLock.lock();
+        try {
+            while (hasUnsettled(appId)) {
+                if (remaining <= 0) {
+                    log.warn("等待对话历史写入超时: appId={}", appId);
+                    return;
+                }
+                remaining = settled.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            settleLock.unlock();
+        }
+    }
+
+    /**
+     * 立即写入队列中的全部消息，等待重试的消息也立即重试一次
+     */
+    public void flush() {
+        List<ChatHistory> retries = new ArrayList<>();
+        for (Iterator<RetryEntry> iterator = retryQueue.iterator(); iterator.hasNext(); ) {
+            retries.add(iterator.next().row());
+            iterator.remove();
+        }
+        writeBatch(retries);
+        flushQueue();
+    }
+
+    /**
+     * 立即写入队列中的全部消息
+     */
+    private void flushQueue() {
+        List<ChatHistory> batch = new ArrayList<>();
+        while (queue.drainTo(batch, chatHistoryWriteConfig.getBatchSize()) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 该应用是否还有未落库、也未转入重试的消息（在队列中，或被后台线程取出正在攒批、写入）
+     */
+    private boolean hasUnsettled(Long appId) {
+        Map<Long, ChatHistory> appPending = pending.get(appId);
+        return appPending != null && appPending.keySet().stream().anyMatch(id -> !failedAttempts.containsKey(id));
+    }
+
+    private void signalSettled() {
+        settleLock.lock();
+        try {
+            settled.signalAll();
+        } finally {
+            settleLock.unlock();
+        }
+    }
+
+    private void drainLoop() {
+        List<ChatHistory> batch = new ArrayList<>(chatHistoryWriteConfig.getBatchSize());
+        long intervalMillis = chatHistoryWriteConfig.getFlushInterval().toMillis();
+        while (running) {
+            try {
+                retryDue();
+                ChatHistory first = queue.poll(intervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 攒批：等待一个间隔，让并发写入的消息合并到同一批
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+                while (batch.size() < chatHistoryWriteConfig.getBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    queue.drainTo(batch, chatHistoryWriteConfig.getBatchSize() - batch.size());
+                    if (batch.size() < chatHistoryWriteConfig.getBatchSize()) {
+                        ChatHistory next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // 关闭时中断，剩余消息由 destroy 写入
+                Thread.currentThread().interrupt();
+                writeBatch(batch);
+                break;
+            } catch (Exception e) {
+                log.error("对话历史批量写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 重试已到时间的失败消息
+     */
+    private void retryDue() {
+        List<RetryEntry> due = new ArrayList<>();
+        retryQueue.drainTo(due);
+        if (!due.isEmpty()) {
+            writeBatch(due.stream().map(RetryEntry::row).toList());
+        }
+    }
+
+    private void writeBatch(List<ChatHistory> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        // 转存后的行会替换待写入列表中的原行，失败重试时也使用转存后的行，不会重复转存
+        List<ChatHistory> batch = rows.stream().map(this::offload).toList();
+        Set<ChatHistory> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        writeLock.lock();
+        try {
+            if (!batchTimer.record(() -> insertBatch(batch))) {
+                // 整批失败时逐条重试，避免一条异常数据拖累整批
+                for (ChatHistory row : batch) {
+                    if (!insertBatch(List.of(row))) {
+                        failed.add(row);
+                    }
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        // 只移除已落库的消息，失败的继续保留在待写入列表中（查询仍然可见），退避后重试
+        removePending(failed.isEmpty() ? batch : batch.stream().filter(row -> !failed.contains(row)).toList());
+        failed.forEach(this::scheduleRetry);
+        signalSettled();
+    }
+
+    private void scheduleRetry(ChatHistory row) {
+        int attempts = failedAttempts.merge(row.getId(), 1, Integer::sum);
+        failedCounter.increment();
+        long initial = chatHistoryWriteConfig.getRetryInitialInterval().toNanos();
+        long delay = Math.min(chatHistoryWriteConfig.getRetryMaxInterval().toNanos(),
+                initial << Math.min(attempts - 1, 20));
+        retryQueue.add(new RetryEntry(row, System.nanoTime() + delay));
+        log.warn("对话历史写入失败，{}ms 后重试: id={}, appId={}, 已失败 {} 次",
+                TimeUnit.NANOSECONDS.toMillis(delay), row.getId(), row.getAppId(), attempts);
+    }
+
+    private boolean insertBatch(List<ChatHistory> rows) {
+        try {
+            Db.executeBatch(rows, rows.size(), ChatHistoryMapper.class, BaseMapper::insertSelective);
+            return true;
+        } catch (Exception e) {
+            if (rows.size() == 1 && isDuplicateKey(e)) {
+                // id 入队时已生成，主键冲突说明之前失败的批次实际已写入这一行
+                return true;
+            }
+            log.error("写入对话历史失败，条数: {}", rows.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 是否为主键冲突（MySQL 错误码 1062），其他约束错误仍按失败处理
+     */
+    private boolean isDuplicateKey(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DuplicateKeyException
+                    || cause instanceof SQLException sqlException && sqlException.getErrorCode() == 1062) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 超长消息压缩转存，行内只保留预览（在写入线程执行，不占用请求线程）
+     * <p>
+     * 原行可能正被查询读取，不能原地修改：转存到副本后再替换待写入列表中的原行，
+     * 读取方要么看到完整原文，要么看到带 blobKey 的预览
+     *
+     * @return 需要写入的行（无需转存时为原行）
+     */
+    private ChatHistory offload(ChatHistory row) {
+        int threshold = chatHistoryWriteConfig.getOffloadThreshold();
+        String message = row.getMessage();
+        if (threshold <= 0 || row.getBlobKey() != null || message == null || message.length() <= threshold) {
+            return row;
+        }
+        ChatHistory offloaded = BeanUtil.copyProperties(row, ChatHistory.class);
+        offloaded.setBlobKey(chatHistoryBlobService.store(message));
+        offloaded.setMessage(StrUtil.sub(message, 0, chatHistoryWriteConfig.getPreviewLength()) + "\n...(完整内容已转存)");
+        Map<Long, ChatHistory> appPending = pending.get(row.getAppId());
+        if (appPending != null) {
+            appPending.replace(row.getId(), row, offloaded);
+        }
+        return offloaded;
+    }
+
+    private void removePending(Collection<ChatHistory> rows) {
+        for (ChatHistory row : rows) {
+            failedAttempts.remove(row.getId());
+            pending.computeIfPresent(row.getAppId(), (appId, appPending) -> {
+                appPending.remove(row.getId());
+                return appPending.isEmpty() ? null : appPending;
+            });
+        }
+    }
+
+    /**
+     * 等待重试的消息
+     *
+     * @param row   消息
+     * @param dueAt 重试时间（System.nanoTime）
+     */
+    private record RetryEntry(ChatHistory row, long dueAt) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.easen.aicode.manager;
 import com.easen.aicode.config.CosClientConfig;
 import com.qcloud.cos.COSClient;
 import com.qcloud.cos.model.DeleteObjectRequest;
+import com.qcloud.cos.model.ObjectMetadata;
 import com.qcloud.cos.model.PutObjectRequest;
 import com.qcloud.cos.model.PutObjectResult;
 import jakarta.annotation.Resource;
@@ -10,6 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.InputStream;
 
 /**
  * COS 对象存储管理器
@@ -55,6 +57,52 @@ public class CosManager {
         }
     }
 
+    /**
+     * 以流的方式上传到 COS 并返回访问 URL
+     * 需要提供内容长度，SDK 不必先把整个流读入内存计算长度
+     *
+     * @param key           COS对象键（完整路径）
+     * @param inputStream   内容
+     * @param contentLength 内容长度（字节）
+     * @param contentType   内容类型
+     * @return 文件的访问URL，失败返回null
+     */
+    public String uploadStream(String key, InputStream inputStream, long contentLength, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(contentLength);
+        metadata.setContentType(contentType);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key, inputStream, metadata);
+        PutObjectResult result = cosClient.putObject(putObjectRequest);
+        if (result != null) {
+            String url = String.format("%s%s", cosClientConfig.getHost(), key);
+            log.info("上传到 COS 成功：{}，{} 字节", url, contentLength);
+            return url;
+        } else {
+            log.error("上传到 COS 失败：{}，返回结果为空", key);
+            return null;
+        }
+    }
+
+    /**
+     * 对象是否已存在
+     *
+     * @param key COS对象键（完整路径）
+     * @return 是否存在
+     */
+    public boolean doesObjectExist(String key) {
+        return cosClient.doesObjectExist(cosClientConfig.getBucket(), key);
+    }
+
+    /**
+     * 获取对象的访问 URL
+     *
+     * @param key COS对象键（完整路径）
+     * @return 访问 URL
+     */
+    public String getObjectUrl(String key) {
+        return String.format("%s%s", cosClientConfig.getHost(), key);
+    }
+
     /**
      * 从 COS 删除文件
      *
@@ -0,0 +1,228 @@
+package com.easen.aicode.manager;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.easen.aicode.model.enums.CodeGenTypeEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 预览文件服务
+ * <p>
+ * 以文件内容哈希作为强 ETag（按路径、大小、修改时间缓存），支持条件请求返回 304 和单段 Range 请求；
+ * Vue 工程构建产物中带哈希的 assets 文件在浏览器中长期缓存，其余文件每次使用前向服务器验证。
+ * 较大的文件交给 Tomcat sendfile 零拷贝发送，不支持时用 FileChannel.transferTo 写出
+ */
+@Slf4j
+@Component
+public class PreviewFileServer {
+
+    /**
+     * Tomcat sendfile 相关请求属性（与 Tomcat DefaultServlet 使用的一致）
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 小于该大小的文件直接写出，sendfile 的额外开销不划算（Tomcat 默认 48KB）
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /**
+     * Vite 构建产物：dist/assets 目录下文件名带内容哈希，如 dist/assets/index-B3k9aZ1x.js
+     */
+    private static final Pattern HASHED_ASSET = Pattern.compile("^dist/assets/[^/]+-[A-Za-z0-9_-]{8,}\\.[A-Za-z0-9]+$");
+
+    /**
+     * Vue 工程的应用目录前缀（vue_project_{appId}），只有这类目录由 Vite 构建
+     */
+    private static final String VUE_PROJECT_DIR_PREFIX = CodeGenTypeEnum.VUE_PROJECT.getValue() + "_";
+
+    /**
+     * 预览需要登录，只允许浏览器缓存，不允许共享缓存（CDN、代理）保存
+     */
+    private static final String CACHE_IMMUTABLE = "private, max-age=31536000, immutable";
+
+    private static final String CACHE_REVALIDATE = "no-cache";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 文件版本 -> 内容哈希
+     */
+    private Cache<FileVersion, String> etagCache;
+
+    @PostConstruct
+    public void init() {
+        etagCache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, etagCache, "previewFileEtag");
+    }
+
+    /**
+     * 发送文件
+     *
+     * @param file         文件（调用方已校验存在且在允许访问的目录内）
+     * @param appDirName   应用目录名，如 vue_project_123
+     * @param relativePath 文件相对应用目录的规范化路径（以 / 分隔），用于判断缓存策略
+     */
+    public void serve(Path file, String appDirName, String relativePath,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = getETag(file, length, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                isHashedAsset(appDirName, relativePath) ? CACHE_IMMUTABLE : CACHE_REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // 处理 If-None-Match / If-Modified-Since，同时写入 ETag 和 Last-Modified
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setContentType(getContentType(file));
+        // 解析 Range，只支持单段（多段时返回完整内容，RFC 允许忽略 Range）
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isIfRangeMatched(request, etag, lastModified)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(start, end, length));
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (count <= 0 || HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由 Tomcat 在请求处理结束后通过 sendfile 发送，结束位置不包含
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, output);
+                if (transferred <= 0) {
+                    // 发送过程中文件被截短
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * 是否为 Vite 构建产物中带内容哈希的文件（内容变化时文件名一定变化，可以长期缓存）
+     */
+    private boolean isHashedAsset(String appDirName, String relativePath) {
+        return appDirName.startsWith(VUE_PROJECT_DIR_PREFIX) && HASHED_ASSET.matcher(relativePath).matches();
+    }
+
+    /**
+     * 强 ETag：文件内容 SHA-256 的前 32 位，内容不变时重新生成（修改时间变化）也不会变
+     */
+    private String getETag(Path file, long length, long lastModified) {
+        String hash = etagCache.get(new FileVersion(file, length, lastModified), version -> {
+            try (InputStream in = Files.newInputStream(version.path())) {
+                return DigestUtil.sha256Hex(in).substring(0, 32);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return "\"" + hash + "\"";
+    }
+
+    /**
+     * 没有 If-Range，或者 If-Range 与当前文件一致（强 ETag 相等或修改时间相同）时才按 Range 返回部分内容
+     */
+    private boolean isIfRangeMatched(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 按文件扩展名获取 Content-Type，文本类型补充 UTF-8 编码
+     */
+    private String getContentType(Path file) {
+        MediaType mediaType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        String subtype = mediaType.getSubtype();
+        boolean textual = "text".equals(mediaType.getType())
+                || subtype.equals("javascript") || subtype.equals("json") || subtype.equals("xml")
+                || subtype.endsWith("+json") || subtype.endsWith("+xml");
+        if (textual && mediaType.getCharset() == null) {
+            mediaType = new MediaType(mediaType, StandardCharsets.UTF_8);
+        }
+        return mediaType.toString();
+    }
+
+    /**
+     * 文件版本，大小或修改时间变化后重新计算哈希
+     */
+    private record FileVersion(Path path, long length, long lastModified) {
+    }
+}
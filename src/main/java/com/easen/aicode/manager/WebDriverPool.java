@@ -0,0 +1,269 @@
+package com.easen.aicode.manager;
+
+import com.easen.aicode.config.ScreenshotConfig;
+import com.easen.aicode.exception.BusinessException;
+import com.easen.aicode.exception.ErrorCode;
+import io.github.bonigarcia.wdm.WebDriverManager;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeOptions;
+import org.springframework.stereotype.Component;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 无头浏览器池
+ * <p>
+ * 每次截图从池中借出一个独占的浏览器，用完归还。浏览器数量有上限，超出时排队等待，
+ * 排队数量也有上限，超出直接拒绝；借出前检查浏览器是否存活，使用达到一定次数后关闭重建，
+ * 单个浏览器崩溃只影响当次截图
+ */
+@Slf4j
+@Component
+public class WebDriverPool {
+
+    @Resource
+    private ScreenshotConfig screenshotConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private GenericObjectPool<PooledWebDriver> pool;
+
+    /**
+     * 使用中和排队中的截图任务许可，数量为浏览器上限 + 排队上限
+     */
+    private Semaphore permits;
+
+    private Timer waitTimer;
+
+    @PostConstruct
+    public void init() {
+        GenericObjectPoolConfig<PooledWebDriver> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(screenshotConfig.getMaxBrowsers());
+        poolConfig.setMaxIdle(screenshotConfig.getMaxBrowsers());
+        poolConfig.setMinIdle(screenshotConfig.getMinIdle());
+        poolConfig.setBlockWhenExhausted(true);
+        poolConfig.setMaxWait(screenshotConfig.getBorrowTimeout());
+        poolConfig.setFairness(true);
+        poolConfig.setTestOnBorrow(true);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRuns(screenshotConfig.getMaxIdleTime().dividedBy(2));
+        poolConfig.setMinEvictableIdleDuration(screenshotConfig.getMaxIdleTime());
+        poolConfig.setJmxEnabled(false);
+        pool = new GenericObjectPool<>(new WebDriverFactory(), poolConfig);
+        permits = new Semaphore(screenshotConfig.getMaxBrowsers() + screenshotConfig.getMaxWaiting());
+
+        Gauge.builder("ai.screenshot.browser.active", pool, GenericObjectPool::getNumActive)
+                .description("正在截图的浏览器数")
+                .register(meterRegistry);
+        Gauge.builder("ai.screenshot.browser.idle", pool, GenericObjectPool::getNumIdle)
+                .description("空闲的浏览器数")
+                .register(meterRegistry);
+        Gauge.builder("ai.screenshot.browser.waiting", pool, GenericObjectPool::getNumWaiters)
+                .description("等待空闲浏览器的截图任务数")
+                .register(meterRegistry);
+        Gauge.builder("ai.screenshot.browser.utilization", pool,
+                        p -> (double) p.getNumActive() / p.getMaxTotal())
+                .description("浏览器池使用率")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("ai.screenshot.browser.wait")
+                .description("等待空闲浏览器的耗时")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pool.close();
+    }
+
+    /**
+     * 借出一个浏览器执行操作，完成后归还
+     *
+     * @param action 使用浏览器的操作
+     * @return 操作结果
+     */
+    public <T> T execute(Function<WebDriver, T> action) {
+        if (!permits.tryAcquire()) {
+            recordScreenshot(System.nanoTime(), "rejected");
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "截图任务过多，请稍后重试");
+        }
+        long start = System.nanoTime();
+        try {
+            PooledWebDriver browser = borrow(start);
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            boolean broken = false;
+            try {
+                T result = action.apply(browser.driver);
+                recordScreenshot(start, "success");
+                return result;
+            } catch (RuntimeException e) {
+                // 页面加载超时不代表浏览器异常，其他 WebDriver 异常（如浏览器崩溃、会话失效）需要丢弃该浏览器
+                broken = e instanceof WebDriverException && !(e instanceof TimeoutException);
+                recordScreenshot(start, "failed");
+                throw e;
+            } finally {
+                release(browser, broken);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledWebDriver borrow(long start) {
+        try {
+            return pool.borrowObject();
+        } catch (NoSuchElementException e) {
+            recordScreenshot(start, "unavailable");
+            // 等待超时，或者新建的浏览器未通过检查
+            log.warn("获取浏览器失败: {}", e.getMessage());
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "截图服务繁忙，请稍后重试");
+        } catch (Exception e) {
+            recordScreenshot(start, "unavailable");
+            log.error("启动浏览器失败", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "启动浏览器失败");
+        }
+    }
+
+    private void release(PooledWebDriver browser, boolean broken) {
+        try {
+            if (broken || ++browser.uses >= screenshotConfig.getMaxUsesPerBrowser()) {
+                log.info("关闭浏览器: broken={}, uses={}", broken, browser.uses);
+                pool.invalidateObject(browser);
+            } else {
+                pool.returnObject(browser);
+            }
+        } catch (Exception e) {
+            log.warn("归还浏览器失败: {}", e.getMessage());
+        }
+    }
+
+    private void recordScreenshot(long start, String outcome) {
+        Timer.builder("ai.screenshot.duration")
+                .description("截图耗时（含等待浏览器）")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 池中的浏览器及其使用次数
+     */
+    private static final class PooledWebDriver {
+
+        private final WebDriver driver;
+
+        private int uses;
+
+        private PooledWebDriver(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+
+    /**
+     * 浏览器的创建、检查、重置和销毁
+     */
+    private final class WebDriverFactory extends BasePooledObjectFactory<PooledWebDriver> {
+
+        private volatile boolean driverReady;
+
+        @Override
+        public PooledWebDriver create() {
+            setupDriver();
+            EdgeOptions options = new EdgeOptions();
+            // 无头模式
+            options.addArguments("--headless");
+            // 禁用GPU（在某些环境下避免问题）
+            options.addArguments("--disable-gpu");
+            // 禁用沙盒模式（Docker环境需要）
+            options.addArguments("--no-sandbox");
+            // 禁用开发者shm使用
+            options.addArguments("--disable-dev-shm-usage");
+            // 设置窗口大小
+            options.addArguments(String.format("--window-size=%d,%d",
+                    screenshotConfig.getWindowWidth(), screenshotConfig.getWindowHeight()));
+            // 禁用扩展
+            options.addArguments("--disable-extensions");
+            // 设置用户代理
+            options.addArguments("--user-agent=Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36 Edg/91.0.864.59");
+
+            WebDriver driver = new EdgeDriver(options);
+            // 设置页面加载超时
+            driver.manage().timeouts().pageLoadTimeout(screenshotConfig.getPageLoadTimeout());
+            // 就绪等待脚本自身有超时控制，这里留出余量
+            driver.manage().timeouts().scriptTimeout(screenshotConfig.getReadinessTimeout().plusSeconds(5));
+            log.info("启动浏览器，当前数量: {}", pool.getNumActive() + pool.getNumIdle() + 1);
+            return new PooledWebDriver(driver);
+        }
+
+        @Override
+        public PooledObject<PooledWebDriver> wrap(PooledWebDriver browser) {
+            return new DefaultPooledObject<>(browser);
+        }
+
+        /**
+         * 浏览器进程和会话仍然可用
+         */
+        @Override
+        public boolean validateObject(PooledObject<PooledWebDriver> p) {
+            try {
+                p.getObject().driver.getWindowHandle();
+                return true;
+            } catch (WebDriverException e) {
+                log.warn("浏览器已失效: {}", e.getMessage());
+                return false;
+            }
+        }
+
+        /**
+         * 归还时清理上一次截图留下的状态，避免影响下一次截图
+         */
+        @Override
+        public void passivateObject(PooledObject<PooledWebDriver> p) {
+            WebDriver driver = p.getObject().driver;
+            driver.manage().deleteAllCookies();
+            driver.get("about:blank");
+        }
+
+        @Override
+        public void destroyObject(PooledObject<PooledWebDriver> p) {
+            try {
+                p.getObject().driver.quit();
+            } catch (WebDriverException e) {
+                log.warn("关闭浏览器失败: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * 自动下载匹配的 EdgeDriver，只需执行一次
+         */
+        private void setupDriver() {
+            if (driverReady) {
+                return;
+            }
+            synchronized (this) {
+                if (!driverReady) {
+                    WebDriverManager.edgedriver().setup();
+                    driverReady = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.easen.aicode.mapper;
+
+
+import com.easen.aicode.model.entity.ChatHistoryBlob;
+import com.mybatisflex.core.BaseMapper;
+
+/**
+ * 对话历史大内容 映射层。
+ *
+ * @author <a>easen</a>
+ */
+public interface ChatHistoryBlobMapper extends BaseMapper<ChatHistoryBlob> {
+
+    /**
+     * 写入内容，哈希已存在时忽略（内容去重）
+     */
+    int insertIgnore(ChatHistoryBlob blob);
+}
@@ -3,6 +3,10 @@ package com.easen.aicode.mapper;
 
 import com.easen.aicode.model.entity.ChatHistory;
 import com.mybatisflex.core.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 对话历史 映射层。
@@ -11,4 +15,24 @@ import com.mybatisflex.core.BaseMapper;
  */
 public interface ChatHistoryMapper extends BaseMapper<ChatHistory> {
 
+    /**
+     * 查询最近有对话的应用 ID，按最后一次对话时间倒序
+     *
+     * @param since 只统计该时间之后的对话
+     * @param limit 最多返回多少个
+     */
+    List<Long> selectRecentActiveAppIds(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
+    /**
+     * 按 (createTime, id) 键集游标倒序查询某应用的对话历史，不统计总数
+     *
+     * @param appId          应用 ID
+     * @param lastCreateTime 上一页最后一条的创建时间，为空表示第一页
+     * @param lastId         上一页最后一条的 id
+     * @param limit          查询条数
+     */
+    List<ChatHistory> selectByAppIdAfterCursor(@Param("appId") Long appId,
+                                               @Param("lastCreateTime") LocalDateTime lastCreateTime,
+                                               @Param("lastId") Long lastId,
+                                               @Param("limit") int limit);
 }
@@ -97,4 +97,10 @@ public class ChatHistory implements Serializable {
      */
     @Column("onlyId")
     private String onlyId;
+
+    /**
+     * 超长消息转存后的内容哈希，为空表示 message 即完整内容
+     */
+    @Column("blobKey")
+    private String blobKey;
 }
@@ -0,0 +1,62 @@
+package com.easen.aicode.model.entity;
+
+import com.mybatisflex.annotation.Column;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 对话历史大内容 实体类。
+ * 以内容哈希为主键存储压缩后的消息，相同内容只存一份
+ *
+ * @author <a>easen</a>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("chat_history_blob")
+public class ChatHistoryBlob implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 原始内容的 sha256
+     */
+    @Id(keyType = KeyType.None)
+    @Column("blobKey")
+    private String blobKey;
+
+    /**
+     * deflate 压缩后的内容
+     */
+    @Column("content")
+    private byte[] content;
+
+    /**
+     * 原始字节数
+     */
+    @Column("originalSize")
+    private Integer originalSize;
+
+    /**
+     * 压缩后字节数
+     */
+    @Column("compressedSize")
+    private Integer compressedSize;
+
+    /**
+     * 创建时间
+     */
+    @Column("createTime")
+    private LocalDateTime createTime;
+}
@@ -34,6 +34,11 @@ public class AppVO implements Serializable {
      */
     private String cover;
 
+    /**
+     * 应用封面缩略图（列表页使用，没有缩略图时为空）
+     */
+    private String coverThumbnail;
+
     /**
      * 代码生成类型
      */
@@ -35,4 +35,9 @@ public @interface RateLimit {
      * 限流提示信息
      */
     String message() default "请求过于频繁，请稍后再试";
+
+    /**
+     * 请求带有该请求头时不限流（如 SSE 断线重连带上的 Last-Event-ID，只接入已有的任务，不产生新的消耗），为空表示始终限流
+     */
+    String skipIfHeader() default "";
 }
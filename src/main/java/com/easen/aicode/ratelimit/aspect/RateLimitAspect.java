@@ -34,6 +34,9 @@ public class RateLimitAspect {
 
     @Before("@annotation(rateLimit)")
     public void doBefore(JoinPoint point, RateLimit rateLimit) {
+        if (hasSkipHeader(rateLimit)) {
+            return;
+        }
         String key = generateRateLimitKey(point, rateLimit);
         // 使用Redisson的分布式限流器
         RRateLimiter rateLimiter = redissonClient.getRateLimiter(key);
@@ -87,6 +90,21 @@ public class RateLimitAspect {
         }
         return keyBuilder.toString();
     }
+    /**
+     * 请求是否带有跳过限流的请求头
+     */
+    private boolean hasSkipHeader(RateLimit rateLimit) {
+        if (rateLimit.skipIfHeader().isEmpty()) {
+            return false;
+        }
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return false;
+        }
+        String value = attributes.getRequest().getHeader(rateLimit.skipIfHeader());
+        return value != null && !value.isBlank();
+    }
+
     /**
      * 获取客户端IP
      *
@@ -1,5 +1,6 @@
 package com.easen.aicode.service;
 
+import com.easen.aicode.ai.model.message.StreamFrame;
 import com.easen.aicode.common.BaseResponse;
 import com.easen.aicode.common.DeleteRequest;
 import com.easen.aicode.model.dto.app.AppAddRequest;
@@ -80,9 +81,19 @@ public interface AppService extends IService<App> {
      * @param message   用户输入消息/需求描述
      * @param loginUser 登录用户（用于鉴权与限流）
      * @param images    可选的图片 URL 列表（用于多模态场景）
-     * @return 代码片段字符串的响应流（可对接 SSE/WebFlux 实时推送）
+     * @return 流式消息的响应流（可对接 SSE/WebFlux 实时推送，由调用方负责序列化）
      */
-    Flux<String> chatToGenCode(Long appId, String message, User loginUser,List<String> images);
+    Flux<StreamFrame> chatToGenCode(Long appId, String message, User loginUser,List<String> images);
+
+    /**
+     * 接入应用进行中的代码生成（断线续传 / 多端同时查看）
+     *
+     * @param appId       应用 ID
+     * @param lastEventId 客户端最后收到的事件 ID，为空时从头接收
+     * @param loginUser   登录用户
+     * @return 从断开位置继续的流式消息帧
+     */
+    Flux<StreamFrame> resumeGenCode(Long appId, String lastEventId, User loginUser);
 
 
     /**
@@ -90,8 +101,9 @@ public interface AppService extends IService<App> {
      *
      * @param appId  应用 ID
      * @param appUrl 应用访问 URL（用于截图）
+     * @param deployDirPath 部署目录（内容未变化时复用已有封面）
      */
-    void generateAppScreenshotAsync(Long appId, String appUrl);
+    void generateAppScreenshotAsync(Long appId, String appUrl, String deployDirPath);
 
     /**
      * 创建app
@@ -0,0 +1,34 @@
+package com.easen.aicode.service;
+
+import com.easen.aicode.model.entity.ChatHistoryBlob;
+import com.mybatisflex.core.service.IService;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 对话历史大内容 服务层。
+ *
+ * <p>超长的 AI 消息（完整源码、工具调用记录）压缩后按内容哈希存入独立表，
+ * 对话历史表只保留指针和预览，查看时再按需解压。</p>
+ *
+ * @author <a>easen</a>
+ */
+public interface ChatHistoryBlobService extends IService<ChatHistoryBlob> {
+
+    /**
+     * 压缩并保存内容，相同内容只保存一次
+     *
+     * @param content 原始内容
+     * @return 内容哈希（blobKey）
+     */
+    String store(String content);
+
+    /**
+     * 批量读取并解压内容
+     *
+     * @param blobKeys 内容哈希集合
+     * @return blobKey -> 原始内容，不存在的 key 不包含在结果中
+     */
+    Map<String, String> loadContents(Collection<String> blobKeys);
+}
@@ -1,5 +1,6 @@
 package com.easen.aicode.service;
 
+import com.easen.aicode.common.CursorPage;
 import com.easen.aicode.model.dto.ChatHistoryQueryRequest;
 import com.easen.aicode.model.entity.ChatHistory;
 import com.easen.aicode.model.entity.User;
@@ -7,7 +8,8 @@ import com.easen.aicode.model.vo.ChatHistoryVO;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.memory.ChatMemory;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -62,15 +64,51 @@ public interface ChatHistoryService extends IService<ChatHistory> {
     Page<ChatHistoryVO> listAppChatHistoryVOByPage(Long appId, int pageSize,
                                                    LocalDateTime lastCreateTime);
 
+    /**
+     * 游标分页查询某 APP 的对话记录（返回VO），按 (createTime, id) 倒序，不统计总数
+     *
+     * @param appId    应用 id
+     * @param pageSize 每页大小
+     * @param cursor   上一页返回的游标，为空表示第一页
+     * @return 对话历史游标分页
+     */
+    CursorPage<ChatHistoryVO> listAppChatHistoryVOByCursor(Long appId, int pageSize, String cursor);
+
     /**
      * 加载对话历史到内存
      *
      * @param appId      应用 id
-     * @param chatMemory 窗口记忆对象
+     * @param chatMemory 记忆对象
      * @param maxCount   最多加载多少条
      * @return 加载成功的条数
      */
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount);
+
+    /**
+     * 查询对话历史并转换为记忆消息（不写入记忆）
+     *
+     * @param appId    应用 id
+     * @param maxCount 最多加载多少条
+     * @return 按时间正序排列的消息，加载失败时返回空列表
+     */
+    List<ChatMessage> loadChatHistoryMessages(Long appId, int maxCount);
+
+    /**
+     * 查询应用最新一条对话历史的 ID
+     *
+     * @param appId 应用 id
+     * @return 最新 ID，没有对话时返回 null
+     */
+    Long getLatestChatHistoryId(Long appId);
+
+    /**
+     * 查询最近活跃的应用 ID
+     *
+     * @param since 只统计该时间之后的对话
+     * @param limit 最多返回多少个
+     * @return 按最后对话时间倒序的应用 ID
+     */
+    List<Long> listRecentActiveAppIds(LocalDateTime since, int limit);
 
     /**
      * 构造查询条件
@@ -88,6 +126,14 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      */
     Page<ChatHistoryVO> listAllChatHistoryVOByPageForAdmin(ChatHistoryQueryRequest chatHistoryQueryRequest);
 
+    /**
+     * 批量转换对话历史视图对象，关联的用户信息一次查询
+     *
+     * @param chatHistoryList 对话历史列表
+     * @return 视图对象列表
+     */
+    List<ChatHistoryVO> getChatHistoryVOList(List<ChatHistory> chatHistoryList);
+
     /**
      * 更新聊天记录状态
      *
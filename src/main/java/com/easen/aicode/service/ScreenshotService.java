@@ -14,4 +14,21 @@ public interface ScreenshotService {
      */
     String generateAndUploadScreenshot(String webUrl);
 
+    /**
+     * 获取网站封面，网站内容与之前截图时一致时直接返回已有封面，不重新截图
+     *
+     * @param webUrl     网址
+     * @param contentDir 网站内容所在目录，用于计算内容指纹
+     * @return 封面 URL
+     */
+    String getOrCreateCover(String webUrl, String contentDir);
+
+    /**
+     * 获取封面对应的列表缩略图
+     *
+     * @param coverUrl 封面 URL
+     * @return 缩略图 URL，封面没有缩略图时返回 null
+     */
+    String getThumbnailUrl(String coverUrl);
+
 }
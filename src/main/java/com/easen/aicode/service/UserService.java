@@ -8,7 +8,9 @@ import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户 服务层。
@@ -82,6 +84,14 @@ public interface UserService extends IService<User> {
      */
     public List<UserVO> getUserVOList(List<User> userList);
 
+    /**
+     * 批量查询用户（一次 IN 查询），用于列表转换时填充用户信息
+     *
+     * @param userIds 用户 id 集合，可包含重复或空值
+     * @return 用户 id -> 用户
+     */
+    Map<Long, User> getUserMapByIds(Collection<Long> userIds);
+
     /**
      * 构建用户查询条件
      *
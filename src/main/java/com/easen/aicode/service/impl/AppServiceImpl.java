@@ -6,11 +6,14 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.easen.aicode.ai.*;
+import com.easen.aicode.ai.model.message.StreamFrame;
+import com.easen.aicode.ai.model.message.StreamMessage;
 import com.easen.aicode.constant.AppConstant;
 import com.easen.aicode.constant.ThumbConstant;
 import com.easen.aicode.core.AiCodeGeneratorFacade;
 import com.easen.aicode.core.AppResourceCleaner;
 import com.easen.aicode.core.builder.VueProjectBuilder;
+import com.easen.aicode.core.buffer.GenerationBuffer;
 import com.easen.aicode.core.hander.StreamHandlerExecutor;
 import com.easen.aicode.exception.BusinessException;
 import com.easen.aicode.exception.ErrorCode;
@@ -84,8 +87,14 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
+    @Resource
+    private GenerationAdmissionManager generationAdmissionManager;
+
+    @Resource
+    private GenerationStreamManager generationStreamManager;
+
     @Override
-    public Flux<String> chatToGenCode(Long appId, String message, User loginUser, List<String> images) {
+    public Flux<StreamFrame> chatToGenCode(Long appId, String message, User loginUser, List<String> images) {
         // 1. 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
@@ -109,15 +118,32 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 5. 构建包含图片的完整消息
         String fullMessage = buildMessageWithImages(message, images);
 
-        // 6. 在调用 AI 前，先保存用户消息到数据库中
-        chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId(), ChatHistoryStatusEnum.NORMAL.getValue(), images);
-
-        // 7. 调用 AI 生成代码（流式）
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(fullMessage, codeGenTypeEnum, appId, loginUser.getId());
+        // 6. 获得执行名额后再调用 AI 生成代码（流式），排队期间推送排队位置
+        Flux<StreamMessage> pipeline = generationAdmissionManager.admit(loginUser.getId(), codeGenTypeEnum, () -> {
+            // 本次生成的内容只保存在一个共享缓冲区中
+            GenerationBuffer buffer = new GenerationBuffer();
+            // 7. 获得应用的生成租约后、调用 AI 前保存用户消息，排队被拒、排队超时或应用已在生成的请求不留下没有回复的用户消息
+            Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(fullMessage, codeGenTypeEnum, appId, loginUser.getId(), buffer,
+                    () -> chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId(), ChatHistoryStatusEnum.NORMAL.getValue(), images));
+            // 8. 收集 AI 响应的内容，并且在完成后保存记录到对话历史
+            return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum, buffer);
+        });
+        // 9. 生成管道与客户端连接解耦，客户端断开后按配置的策略中止或继续生成
+        return generationStreamManager.launch(appId, loginUser.getId(), pipeline);
 
-        // 8. 收集 AI 响应的内容，并且在完成后保存记录到对话历史
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum);
+    }
 
+    @Override
+    public Flux<StreamFrame> resumeGenCode(Long appId, String lastEventId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        App app = this.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        // 有应用访问权限的成员都可以查看进行中的生成
+        if (!appUserService.hasAppPermission(appId, loginUser.getId())) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限访问该应用");
+        }
+        log.info("接入进行中的代码生成: appId={}, userId={}, lastEventId={}", appId, loginUser.getId(), lastEventId);
+        return generationStreamManager.resume(appId, lastEventId);
     }
 
     /**
@@ -210,7 +236,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 10. 得到可访问的 URL 地址
         String appDeployUrl = String.format("%s/%s", AppConstant.CODE_DEPLOY_HOST, deployKey);
         // 11. 异步生成截图并且更新应用封面
-        generateAppScreenshotAsync(appId, appDeployUrl);
+        generateAppScreenshotAsync(appId, appDeployUrl, deployDirPath);
         return appDeployUrl;
     }
 
@@ -219,13 +245,14 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
      *
      * @param appId  应用ID
      * @param appUrl 应用访问URL
+     * @param deployDirPath 部署目录
      */
     @Override
-    public void generateAppScreenshotAsync(Long appId, String appUrl) {
+    public void generateAppScreenshotAsync(Long appId, String appUrl, String deployDirPath) {
         // 使用虚拟线程并执行
         Thread.startVirtualThread(() -> {
-            // 调用截图服务生成截图并上传
-            String screenshotUrl = screenshotService.generateAndUploadScreenshot(appUrl);
+            // 调用截图服务生成截图并上传（部署内容未变化时直接复用已有封面）
+            String screenshotUrl = screenshotService.getOrCreateCover(appUrl, deployDirPath);
             // 更新数据库的封面
             App updateApp = new App();
             updateApp.setId(appId);
@@ -317,6 +344,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         }
         AppVO appVO = new AppVO();
         BeanUtil.copyProperties(app, appVO);
+        appVO.setCoverThumbnail(screenshotService.getThumbnailUrl(app.getCover()));
         return appVO;
     }
 
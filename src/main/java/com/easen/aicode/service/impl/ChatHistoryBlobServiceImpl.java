@@ -0,0 +1,105 @@
+package com.easen.aicode.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.easen.aicode.exception.BusinessException;
+import com.easen.aicode.exception.ErrorCode;
+import com.easen.aicode.mapper.ChatHistoryBlobMapper;
+import com.easen.aicode.model.entity.ChatHistoryBlob;
+import com.easen.aicode.service.ChatHistoryBlobService;
+import com.mybatisflex.spring.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 对话历史大内容 服务层实现。
+ *
+ * @author <a>easen</a>
+ */
+@Slf4j
+@Service
+public class ChatHistoryBlobServiceImpl extends ServiceImpl<ChatHistoryBlobMapper, ChatHistoryBlob> implements ChatHistoryBlobService {
+
+    @Override
+    public String store(String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        String blobKey = DigestUtil.sha256Hex(raw);
+        // 主键冲突说明已有相同内容，直接复用
+        if (this.getById(blobKey) != null) {
+            return blobKey;
+        }
+        byte[] compressed = deflate(raw);
+        ChatHistoryBlob blob = ChatHistoryBlob.builder()
+                .blobKey(blobKey)
+                .content(compressed)
+                .originalSize(raw.length)
+                .compressedSize(compressed.length)
+                .createTime(LocalDateTime.now())
+                .build();
+        this.getMapper().insertIgnore(blob);
+        log.debug("对话内容转存: blobKey={}, {} -> {} 字节", blobKey, raw.length, compressed.length);
+        return blobKey;
+    }
+
+    @Override
+    public Map<String, String> loadContents(Collection<String> blobKeys) {
+        Map<String, String> result = new HashMap<>();
+        if (CollUtil.isEmpty(blobKeys)) {
+            return result;
+        }
+        for (ChatHistoryBlob blob : this.listByIds(new HashSet<>(blobKeys))) {
+            result.put(blob.getBlobKey(), new String(inflate(blob.getContent(), blob.getOriginalSize()), StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int originalSize) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            // 原始长度已知，一次分配
+            byte[] result = new byte[originalSize];
+            int offset = 0;
+            while (offset < originalSize && !inflater.finished()) {
+                int count = inflater.inflate(result, offset, originalSize - offset);
+                if (count == 0 && inflater.needsInput()) {
+                    break;
+                }
+                offset += count;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话内容解压失败");
+        } finally {
+            inflater.end();
+        }
+    }
+}
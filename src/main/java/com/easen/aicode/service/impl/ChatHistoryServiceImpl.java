@@ -1,29 +1,37 @@
 package com.easen.aicode.service.impl;
 
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.crypto.digest.DigestUtil;
+import com.easen.aicode.ai.memory.ChatMemoryWatermarkManager;
+import com.easen.aicode.common.CursorPage;
 import com.easen.aicode.constant.UserConstant;
 import com.easen.aicode.exception.ErrorCode;
 import com.easen.aicode.exception.ThrowUtils;
+import com.easen.aicode.manager.ChatHistoryBatchWriter;
 import com.easen.aicode.mapper.ChatHistoryMapper;
 import com.easen.aicode.model.dto.ChatHistoryQueryRequest;
 import com.easen.aicode.model.entity.App;
 import com.easen.aicode.model.entity.ChatHistory;
 import com.easen.aicode.model.entity.User;
 import com.easen.aicode.model.enums.ChatHistoryMessageTypeEnum;
+import com.easen.aicode.model.enums.ChatHistoryStatusEnum;
 import com.easen.aicode.model.enums.ChatHistoryTypeEnum;
 import com.easen.aicode.model.vo.ChatHistoryVO;
 import com.easen.aicode.service.AppService;
 import com.easen.aicode.service.AppUserService;
+import com.easen.aicode.service.ChatHistoryBlobService;
 import com.easen.aicode.service.ChatHistoryService;
 import com.easen.aicode.service.UserService;
+import com.easen.aicode.utils.CursorUtils;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.memory.ChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
@@ -32,8 +40,13 @@ import com.mybatisflex.core.paginate.Page;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -48,6 +61,23 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Resource
     private UserService userService;
 
+    @Resource
+    private ChatMemoryWatermarkManager chatMemoryWatermarkManager;
+
+    @Resource
+    private ChatHistoryBatchWriter chatHistoryBatchWriter;
+
+    @Resource
+    private ChatHistoryBlobService chatHistoryBlobService;
+
+    /**
+     * 对话历史倒序：创建时间降序，同一时间按 id 降序
+     */
+    private static final Comparator<ChatHistory> NEWEST_FIRST = Comparator
+            .comparing(ChatHistory::getCreateTime)
+            .thenComparing(ChatHistory::getId)
+            .reversed();
+
     @Override
     public Page<ChatHistory> listAppChatHistoryByPage(Long appId, int pageSize,
                                                       LocalDateTime lastCreateTime) {
@@ -57,9 +87,41 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         ChatHistoryQueryRequest queryRequest = new ChatHistoryQueryRequest();
         queryRequest.setAppId(appId);
         queryRequest.setLastCreateTime(lastCreateTime);
-        QueryWrapper queryWrapper = this.getQueryWrapper(queryRequest);
-        // 查询数据
-        return this.page(Page.of(1, pageSize), queryWrapper);
+        Predicate<ChatHistory> pendingFilter = row -> lastCreateTime == null || row.getCreateTime().isBefore(lastCreateTime);
+        // 合并尚未落库的消息保证写后可读
+        List<ChatHistory> records = mergePending(appId, this.list(this.getQueryWrapper(queryRequest).limit(pageSize)),
+                pendingFilter, pageSize);
+        // 旧接口的调用方用 totalRow 判断是否还有更多，保留总数统计；不需要总数的调用方使用游标分页接口，不执行 COUNT
+        long totalRow = this.count(this.getQueryWrapper(queryRequest))
+                + chatHistoryBatchWriter.getPending(appId).stream().filter(pendingFilter).count();
+        Page<ChatHistory> page = new Page<>(1, pageSize, totalRow);
+        page.setRecords(records);
+        return page;
+    }
+
+    @Override
+    public CursorPage<ChatHistoryVO> listAppChatHistoryVOByCursor(Long appId, int pageSize, String cursor) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        ThrowUtils.throwIf(pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "页面大小必须在1-50之间");
+        CursorUtils.Cursor position = CursorUtils.decode(cursor);
+        // 多查一条用于判断是否还有下一页
+        List<ChatHistory> records = this.getMapper().selectByAppIdAfterCursor(appId,
+                position == null ? null : position.createTime(),
+                position == null ? null : position.id(),
+                pageSize + 1);
+        records = mergePending(appId, records, row -> position == null
+                || row.getCreateTime().isBefore(position.createTime())
+                || (row.getCreateTime().isEqual(position.createTime()) && row.getId() < position.id()), pageSize + 1);
+        boolean hasMore = records.size() > pageSize;
+        if (hasMore) {
+            records = records.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            ChatHistory last = records.get(records.size() - 1);
+            nextCursor = CursorUtils.encode(last.getCreateTime(), last.getId());
+        }
+        return new CursorPage<>(getChatHistoryVOList(records), nextCursor, hasMore);
     }
 
     @Override
@@ -77,18 +139,32 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         chatHistoryVOPage.setTotalPage(chatHistoryPage.getTotalPage());
 
         // 转换记录
-        List<ChatHistoryVO> voList = chatHistoryPage.getRecords().stream()
-                .map(this::convertToVO)
-                .toList();
-        chatHistoryVOPage.setRecords(voList);
+        chatHistoryVOPage.setRecords(getChatHistoryVOList(chatHistoryPage.getRecords()));
 
         return chatHistoryVOPage;
     }
 
+    @Override
+    public List<ChatHistoryVO> getChatHistoryVOList(List<ChatHistory> chatHistoryList) {
+        if (CollUtil.isEmpty(chatHistoryList)) {
+            return new ArrayList<>();
+        }
+        // 一次查询出本页涉及的所有用户，避免逐条查询
+        Map<Long, User> userMap = userService.getUserMapByIds(chatHistoryList.stream()
+                .map(ChatHistory::getUserId)
+                .toList());
+        // 只解压当前页中被转存的消息
+        return rehydrate(chatHistoryList).stream()
+                .map(chatHistory -> convertToVO(chatHistory, userMap))
+                .toList();
+    }
+
     /**
      * 将ChatHistory转换为ChatHistoryVO
+     *
+     * @param userMap 已查询的用户 id -> 用户
      */
-    private ChatHistoryVO convertToVO(ChatHistory chatHistory) {
+    private ChatHistoryVO convertToVO(ChatHistory chatHistory, Map<Long, User> userMap) {
         ChatHistoryVO vo = ChatHistoryVO.builder()
                 .message(chatHistory.getMessage())
                 .messageType(chatHistory.getMessageType())
@@ -100,7 +176,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
         // 获取用户昵称
         if (chatHistory.getUserId() != null) {
-            User user = userService.getById(chatHistory.getUserId());
+            User user = userMap.get(chatHistory.getUserId());
             if (user != null) {
                 vo.setUserName(user.getUserName());
             }
@@ -146,14 +222,30 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             }
         }
 
-        return this.saveBatch(chatHistory);
+        // 异步批量写入，不阻塞完成流式响应的线程
+        boolean result = chatHistoryBatchWriter.write(chatHistory);
+        if (result && ChatHistoryStatusEnum.NORMAL.getValue().equals(status)) {
+            // 正常消息同样会写入 Redis 记忆，推进水位线
+            chatHistory.stream()
+                    .map(ChatHistory::getId)
+                    .filter(Objects::nonNull)
+                    .max(Long::compare)
+                    .ifPresent(latestId -> chatMemoryWatermarkManager.advanceIfPresent(appId, latestId));
+        } else {
+            // 中断或失败的消息与记忆内容不一致，下次需要从数据库重新加载
+            chatMemoryWatermarkManager.invalidate(appId);
+        }
+        return result;
     }
 
     @Override
     public boolean deleteByAppId(Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        // 先写完尚未落库的消息，避免删除后又被写入
+        chatHistoryBatchWriter.flush(appId);
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq("appId", appId);
+        chatMemoryWatermarkManager.invalidate(appId);
         return this.remove(queryWrapper);
     }
 
@@ -191,8 +283,9 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         if (StrUtil.isNotBlank(sortField)) {
             queryWrapper.orderBy(sortField, "ascend".equals(sortOrder));
         } else {
-            // 默认按创建时间降序排列
-            queryWrapper.orderBy("createTime", false);
+            // 默认按创建时间降序排列，同一时间按 id 降序保证顺序稳定
+            queryWrapper.orderBy("createTime", false)
+                    .orderBy("id", false);
         }
         return queryWrapper;
     }
@@ -215,36 +308,86 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         chatHistoryVOPage.setTotalPage(chatHistoryPage.getTotalPage());
 
         // 转换记录
-        List<ChatHistoryVO> voList = chatHistoryPage.getRecords().stream()
-                .map(this::convertToVO)
-                .toList();
-        chatHistoryVOPage.setRecords(voList);
+        chatHistoryVOPage.setRecords(getChatHistoryVOList(chatHistoryPage.getRecords()));
 
         return chatHistoryVOPage;
     }
 
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount) {
+        List<ChatMessage> messages = loadChatHistoryMessages(appId, maxCount);
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        // 清理历史缓存，防止重复加载
+        chatMemory.clear();
+        messages.forEach(chatMemory::add);
+        log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, messages.size());
+        return messages.size();
+    }
+
+    @Override
+    public List<ChatMessage> loadChatHistoryMessages(Long appId, int maxCount) {
         try {
             // 查询历史记录
             List<ChatHistory> historyList = queryChatHistory(appId, maxCount);
             if (CollUtil.isEmpty(historyList)) {
                 log.info("应用 {} 没有历史对话记录", appId);
-                return 0;
+                return List.of();
             }
-            // 清理历史缓存，防止重复加载
-            chatMemory.clear();
-            // 按 onlyId 分组并处理
-            int loadedCount = processGroupedHistory(historyList, chatMemory);
-            log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, loadedCount);
-            return loadedCount;
+            // 按 onlyId 分组并转换
+            return processGroupedHistory(historyList);
         } catch (Exception e) {
             log.error("加载历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
             // 加载失败不影响系统运行，只是没有历史上下文
-            return 0;
+            return List.of();
         }
     }
     
+    @Override
+    public Long getLatestChatHistoryId(Long appId) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        // 雪花 ID 随时间递增，走 appId 索引即可取到最大值
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .select("MAX(id)")
+                .eq(ChatHistory::getAppId, appId);
+        Long latestId = this.getObjAs(queryWrapper, Long.class);
+        for (ChatHistory row : chatHistoryBatchWriter.getPending(appId)) {
+            if (latestId == null || row.getId() > latestId) {
+                latestId = row.getId();
+            }
+        }
+        return latestId;
+    }
+
+    /**
+     * 把尚未落库的消息合并到查询结果中，按倒序取前 limit 条
+     *
+     * @param dbRows 数据库查询结果（倒序）
+     * @param filter 待写入消息需要满足的游标条件
+     */
+    private List<ChatHistory> mergePending(Long appId, List<ChatHistory> dbRows,
+                                           Predicate<ChatHistory> filter, int limit) {
+        List<ChatHistory> pendingRows = chatHistoryBatchWriter.getPending(appId);
+        if (pendingRows.isEmpty()) {
+            return dbRows;
+        }
+        // 刚写完、还未移出待写入列表的消息会同时出现在两边，按 id 去重
+        Map<Long, ChatHistory> merged = new LinkedHashMap<>();
+        pendingRows.stream().filter(filter).forEach(row -> merged.put(row.getId(), row));
+        dbRows.forEach(row -> merged.putIfAbsent(row.getId(), row));
+        return merged.values().stream()
+                .sorted(NEWEST_FIRST)
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public List<Long> listRecentActiveAppIds(LocalDateTime since, int limit) {
+        ThrowUtils.throwIf(since == null || limit <= 0, ErrorCode.PARAMS_ERROR);
+        return this.getMapper().selectRecentActiveAppIds(since, limit);
+    }
+
     /**
      * 查询聊天历史记录
      */
@@ -252,35 +395,62 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq(ChatHistory::getAppId, appId)
                 .orderBy(ChatHistory::getCreateTime, false)
-                .limit(1, maxCount);
-        
-        List<ChatHistory> historyList = this.list(queryWrapper);
+                .orderBy(ChatHistory::getId, false)
+                .limit(maxCount + 1);
+        // 合并尚未落库的消息后再跳过最新一条（本轮的用户消息会直接作为提示词发送）
+        List<ChatHistory> historyList = mergePending(appId, this.list(queryWrapper), row -> true, maxCount + 1);
+        historyList = historyList.size() <= 1 ? List.of() : historyList.subList(1, historyList.size());
         // 反转列表，确保按时间正序（老的在前，新的在后）
-        return historyList.reversed();
+        return rehydrate(historyList.reversed());
+    }
+
+    /**
+     * 还原被转存的超长消息，返回的新列表中转存的行替换为包含完整内容的副本（不修改原对象）
+     */
+    private List<ChatHistory> rehydrate(List<ChatHistory> historyList) {
+        Set<String> blobKeys = historyList.stream()
+                .map(ChatHistory::getBlobKey)
+                .filter(StrUtil::isNotBlank)
+                .collect(Collectors.toSet());
+        if (blobKeys.isEmpty()) {
+            return historyList;
+        }
+        Map<String, String> contents = chatHistoryBlobService.loadContents(blobKeys);
+        return historyList.stream()
+                .map(history -> {
+                    String content = history.getBlobKey() == null ? null : contents.get(history.getBlobKey());
+                    if (content == null) {
+                        return history;
+                    }
+                    ChatHistory full = BeanUtil.copyProperties(history, ChatHistory.class);
+                    full.setMessage(content);
+                    return full;
+                })
+                .toList();
     }
     
     /**
      * 处理分组后的历史记录
      */
-    private int processGroupedHistory(List<ChatHistory> historyList, MessageWindowChatMemory chatMemory) {
-        // 按 onlyId 分组，过滤掉空值
+    private List<ChatMessage> processGroupedHistory(List<ChatHistory> historyList) {
+        // 按 onlyId 分组，过滤掉空值（保持时间顺序）
         Map<String, List<ChatHistory>> groupedHistory = historyList.stream()
                 .filter(history -> StrUtil.isNotBlank(history.getOnlyId()))
-                .collect(Collectors.groupingBy(ChatHistory::getOnlyId));
-        int loadedCount = 0;
+                .collect(Collectors.groupingBy(ChatHistory::getOnlyId, LinkedHashMap::new, Collectors.toList()));
+        List<ChatMessage> messages = new ArrayList<>(groupedHistory.size());
         for (List<ChatHistory> group : groupedHistory.values()) {
             if (CollUtil.isEmpty(group)) {
                 continue;
             }
             String mergedMessage = mergeGroupMessages(group);
             if (StrUtil.isNotBlank(mergedMessage)) {
-                boolean added = addMessageToMemory(group.get(0).getMessageType(), mergedMessage, chatMemory);
-                if (added) {
-                    loadedCount++;
+                ChatMessage chatMessage = toChatMessage(group.get(0).getMessageType(), mergedMessage);
+                if (chatMessage != null) {
+                    messages.add(chatMessage);
                 }
             }
         }
-        return loadedCount;
+        return messages;
     }
     
     /**
@@ -321,29 +491,21 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     }
     
     /**
-     * 将消息添加到聊天记忆中
+     * 将消息转换为记忆消息
+     *
+     * @return 不支持的类型返回 null
      */
-    private boolean addMessageToMemory(String messageType, String message, MessageWindowChatMemory chatMemory) {
+    private ChatMessage toChatMessage(String messageType, String message) {
         if (StrUtil.isBlank(messageType) || StrUtil.isBlank(message)) {
-            return false;
+            return null;
         }
-        
-        try {
-            if (ChatHistoryMessageTypeEnum.USER.getValue().equals(messageType)) {
-                chatMemory.add(UserMessage.from(message));
-                return true;
-            } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(messageType)) {
-                chatMemory.add(AiMessage.from(message));
-                return true;
-            } else {
-                log.warn("不支持的消息类型: {}", messageType);
-                return false;
-            }
-        } catch (Exception e) {
-            log.error("添加消息到聊天记忆失败，messageType: {}, message: {}, error: {}", 
-                    messageType, message, e.getMessage(), e);
-            return false;
+        if (ChatHistoryMessageTypeEnum.USER.getValue().equals(messageType)) {
+            return UserMessage.from(message);
+        } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(messageType)) {
+            return AiMessage.from(message);
         }
+        log.warn("不支持的消息类型: {}", messageType);
+        return null;
     }
 
     @Override
@@ -353,6 +515,8 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         ThrowUtils.throwIf(status == null, ErrorCode.PARAMS_ERROR, "状态不能为空");
 
         try {
+            // 最新的 AI 消息可能还在写入队列中
+            chatHistoryBatchWriter.flush(appId);
             // 构建更新条件：根据appId和userId更新最新的AI消息状态
             QueryWrapper queryWrapper = QueryWrapper.create()
                     .eq(ChatHistory::getAppId, appId)
@@ -366,6 +530,8 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             updateEntity.setStatus(status);
 
             boolean result = this.update(updateEntity, queryWrapper);
+            // 状态变更说明生成被中断，记忆需要重新加载
+            chatMemoryWatermarkManager.invalidate(appId);
             log.info("更新聊天记录状态: appId={}, userId={}, status={}, result={}", appId, userId, status, result);
             return result;
         } catch (Exception e) {
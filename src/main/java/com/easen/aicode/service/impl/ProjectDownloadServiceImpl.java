@@ -34,7 +34,8 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
             "target",
             ".mvn",
             ".idea",
-            ".vscode"
+            ".vscode",
+            ".build-fingerprint"
     );
 
     /**
@@ -1,88 +1,152 @@
 package com.easen.aicode.service.impl;
 
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.easen.aicode.config.ScreenshotConfig;
 import com.easen.aicode.exception.ErrorCode;
 import com.easen.aicode.exception.ThrowUtils;
 import com.easen.aicode.manager.CosManager;
 import com.easen.aicode.service.ScreenshotService;
+import com.easen.aicode.utils.DirectoryFingerprintUtils;
+import com.easen.aicode.utils.ImageCompressUtils;
+import com.easen.aicode.utils.RedisKeyUtil;
 import com.easen.aicode.utils.WebScreenshotUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.UUID;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
 
 @Service
 @Slf4j
 public class ScreenshotServiceImpl implements ScreenshotService {
 
+    /**
+     * 封面文件名后缀，缩略图文件名由封面文件名替换该后缀得到
+     */
+    private static final String COVER_SUFFIX = "_cover.jpg";
+
+    private static final String JPEG_CONTENT_TYPE = "image/jpeg";
+
     @Resource
     private CosManager cosManager;
 
+    @Resource
+    private ScreenshotConfig screenshotConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public String getOrCreateCover(String webUrl, String contentDir) {
+        String fingerprint = null;
+        try {
+            fingerprint = DirectoryFingerprintUtils.fingerprint(Path.of(contentDir), Set.of());
+        } catch (IOException e) {
+            log.warn("计算网站内容指纹失败，直接截图: {}, {}", contentDir, e.getMessage());
+        }
+        if (fingerprint != null) {
+            String cachedUrl = stringRedisTemplate.opsForValue().get(RedisKeyUtil.getCoverFingerprintKey(fingerprint));
+            if (StrUtil.isNotBlank(cachedUrl)) {
+                log.info("网站内容未变化，复用已有封面：{}", cachedUrl);
+                countCover("reused");
+                return cachedUrl;
+            }
+        }
+        String coverUrl = generateAndUploadScreenshot(webUrl);
+        if (fingerprint != null) {
+            stringRedisTemplate.opsForValue().set(RedisKeyUtil.getCoverFingerprintKey(fingerprint), coverUrl,
+                    screenshotConfig.getCoverCacheTtl());
+        }
+        return coverUrl;
+    }
+
     @Override
     public String generateAndUploadScreenshot(String webUrl) {
         // 参数校验
         ThrowUtils.throwIf(StrUtil.isBlank(webUrl), ErrorCode.PARAMS_ERROR, "截图的网址不能为空");
         log.info("开始生成网页截图，URL：{}", webUrl);
-        // 本地截图
-        String localScreenshotPath = WebScreenshotUtils.saveWebPageScreenshot(webUrl);
-        ThrowUtils.throwIf(StrUtil.isBlank(localScreenshotPath), ErrorCode.OPERATION_ERROR, "生成网页截图失败");
-        // 上传图片到 COS
-        try {
-            String cosUrl = uploadScreenshotToCos(localScreenshotPath);
-            ThrowUtils.throwIf(StrUtil.isBlank(cosUrl), ErrorCode.OPERATION_ERROR, "上传截图到对象存储失败");
-            log.info("截图上传成功，URL：{}", cosUrl);
+        // 截图（内存中）
+        byte[] screenshotBytes = WebScreenshotUtils.captureWebPageScreenshot(webUrl);
+        ThrowUtils.throwIf(screenshotBytes == null, ErrorCode.OPERATION_ERROR, "生成网页截图失败");
+        // 解码一次，封面和缩略图都从原图缩放
+        BufferedImage screenshot = ImageCompressUtils.read(screenshotBytes);
+        BufferedImage cover = ImageCompressUtils.scaleToWidth(screenshot, screenshotConfig.getCoverMaxWidth());
+        byte[] coverBytes = ImageCompressUtils.toJpeg(cover, screenshotConfig.getQuality(),
+                screenshotConfig.getMinQuality(), screenshotConfig.getCoverTargetSize().toBytes());
+        // 以封面内容哈希作为对象键，相同的封面只上传一次
+        String coverKey = generateScreenshotKey(DigestUtil.sha256Hex(coverBytes) + COVER_SUFFIX);
+        if (cosManager.doesObjectExist(coverKey)) {
+            String cosUrl = cosManager.getObjectUrl(coverKey);
+            log.info("相同封面已存在，跳过上传：{}", cosUrl);
+            countCover("deduplicated");
             return cosUrl;
-        } finally {
-            // 清理本地文件
-            cleanupLocalFile(localScreenshotPath);
         }
+        // 先上传缩略图，封面 URL 写入数据库时缩略图已经可以访问
+        for (Integer width : screenshotConfig.getThumbnailWidths()) {
+            BufferedImage thumbnail = ImageCompressUtils.scaleToWidth(cover, width);
+            byte[] thumbnailBytes = ImageCompressUtils.toJpeg(thumbnail, screenshotConfig.getQuality(),
+                    screenshotConfig.getMinQuality(), 0);
+            upload(toThumbnailKey(coverKey, width), thumbnailBytes);
+        }
+        String cosUrl = upload(coverKey, coverBytes);
+        ThrowUtils.throwIf(StrUtil.isBlank(cosUrl), ErrorCode.OPERATION_ERROR, "上传截图到对象存储失败");
+        log.info("截图上传成功，URL：{}，截图 {} 字节，封面 {} 字节", cosUrl, screenshotBytes.length, coverBytes.length);
+        countCover("uploaded");
+        return cosUrl;
+    }
+
+    @Override
+    public String getThumbnailUrl(String coverUrl) {
+        // 只有按当前规则生成的封面才有缩略图（旧封面和用户自定义封面没有）
+        if (StrUtil.isBlank(coverUrl) || !coverUrl.endsWith(COVER_SUFFIX)
+                || cosManager.extractKeyFromUrl(coverUrl) == null
+                || screenshotConfig.getThumbnailWidths().isEmpty()) {
+            return null;
+        }
+        return toThumbnailKey(coverUrl, Collections.min(screenshotConfig.getThumbnailWidths()));
     }
 
     /**
-     * 上传截图到对象存储
+     * 上传图片到对象存储
      *
-     * @param localScreenshotPath 本地截图路径
      * @return 对象存储访问URL，失败返回null
      */
-    private String uploadScreenshotToCos(String localScreenshotPath) {
-        if (StrUtil.isBlank(localScreenshotPath)) {
-            return null;
-        }
-        File screenshotFile = new File(localScreenshotPath);
-        if (!screenshotFile.exists()) {
-            log.error("截图文件不存在: {}", localScreenshotPath);
-            return null;
-        }
-        // 生成 COS 对象键
-        String fileName = UUID.randomUUID().toString().substring(0, 8) + "_compressed.jpg";
-        String cosKey = generateScreenshotKey(fileName);
-        return cosManager.uploadFile(cosKey, screenshotFile);
+    private String upload(String key, byte[] bytes) {
+        return cosManager.uploadStream(key, new ByteArrayInputStream(bytes), bytes.length, JPEG_CONTENT_TYPE);
     }
 
     /**
-     * 生成截图的对象存储键
-     * 格式：/screenshots/2025/07/31/filename.jpg
+     * 封面对应的缩略图路径，如 xxx_cover.jpg -> xxx_w400.jpg
      */
-    private String generateScreenshotKey(String fileName) {
-        String datePath = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-        return String.format("/screenshots/%s/%s", datePath, fileName);
+    private String toThumbnailKey(String cover, int width) {
+        return StrUtil.removeSuffix(cover, COVER_SUFFIX) + "_w" + width + ".jpg";
     }
 
     /**
-     * 清理本地文件
-     *
-     * @param localFilePath 本地文件路径
+     * 生成截图的对象存储键
+     * 格式：/screenshots/ab/filename.jpg（文件名为内容哈希，按前两位分目录）
      */
-    private void cleanupLocalFile(String localFilePath) {
-        File localFile = new File(localFilePath);
-        if (localFile.exists()) {
-            FileUtil.del(localFile);
-            log.info("清理本地文件成功: {}", localFilePath);
-        }
+    private String generateScreenshotKey(String fileName) {
+        return String.format("/screenshots/%s/%s", fileName.substring(0, 2), fileName);
+    }
+
+    private void countCover(String result) {
+        Counter.builder("ai.screenshot.cover")
+                .description("获取封面的次数（reused 内容未变化复用，deduplicated 相同封面已存在，uploaded 新上传）")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
     }
 }
@@ -30,8 +30,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.easen.aicode.constant.UserConstant.USER_LOGIN_STATE;
@@ -229,6 +234,21 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         return userList.stream().map(this::getUserVO).collect(Collectors.toList());
     }
 
+    @Override
+    public Map<Long, User> getUserMapByIds(Collection<Long> userIds) {
+        if (CollUtil.isEmpty(userIds)) {
+            return new HashMap<>();
+        }
+        Set<Long> distinctIds = userIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (distinctIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return this.listByIds(distinctIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity(), (a, b) -> a));
+    }
+
     @Override
     public QueryWrapper getQueryWrapper(UserQueryRequest userQueryRequest) {
         if (userQueryRequest == null) {
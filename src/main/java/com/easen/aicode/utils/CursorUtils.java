@@ -0,0 +1,61 @@
+package com.easen.aicode.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.easen.aicode.exception.BusinessException;
+import com.easen.aicode.exception.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * 游标工具类
+ * 游标由 (createTime, id) 组成，编码为 URL 安全的 Base64 字符串，对前端不透明
+ */
+public class CursorUtils {
+
+    private static final String SEPARATOR = ":";
+
+    /**
+     * 游标位置
+     *
+     * @param createTime 最后一条记录的创建时间
+     * @param id         最后一条记录的 id
+     */
+    public record Cursor(LocalDateTime createTime, long id) {
+    }
+
+    /**
+     * 编码游标
+     */
+    public static String encode(LocalDateTime createTime, long id) {
+        // 时间只作为比较值使用，统一按 UTC 转换，保证编解码对称
+        long epochMilli = createTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        String raw = epochMilli + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     *
+     * @return 游标为空时返回 null
+     */
+    public static Cursor decode(String cursor) {
+        if (StrUtil.isBlank(cursor)) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR);
+            if (parts.length != 2) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标格式错误");
+            }
+            LocalDateTime createTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[0])), ZoneOffset.UTC);
+            return new Cursor(createTime, Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标格式错误");
+        }
+    }
+}
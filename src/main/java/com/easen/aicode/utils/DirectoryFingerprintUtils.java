@@ -0,0 +1,71 @@
+package com.easen.aicode.utils;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 目录指纹工具类
+ * 对目录下的文件（相对路径 + 内容）计算 SHA-256，文件按路径排序，结果与遍历顺序和修改时间无关
+ */
+public class DirectoryFingerprintUtils {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 计算目录指纹
+     *
+     * @param root         目录
+     * @param excludeNames 排除的文件或目录名（任意层级）
+     * @return 十六进制指纹
+     */
+    public static String fingerprint(Path root, Set<String> excludeNames) throws IOException {
+        // 跳过排除的目录整棵子树（如 node_modules），不遍历其中的文件
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(root) && excludeNames.contains(dir.getFileName().toString())
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !excludeNames.contains(file.getFileName().toString())) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(null);
+        MessageDigest digest = DigestUtil.digester("SHA-256").getDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (Path file : files) {
+            // 统一使用 / 分隔，不同操作系统上结果一致
+            String relativePath = root.relativize(file).toString().replace('\\', '/');
+            digest.update(relativePath.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            digest.update((byte) 0);
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+}
@@ -0,0 +1,122 @@
+package com.easen.aicode.utils;
+
+import com.easen.aicode.exception.BusinessException;
+import com.easen.aicode.exception.ErrorCode;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 图片压缩工具类
+ * 全程在内存中完成解码、缩放和编码，不产生临时文件
+ */
+public class ImageCompressUtils {
+
+    /**
+     * 逐步降低 JPEG 质量时每次的降幅
+     */
+    private static final float QUALITY_STEP = 0.1f;
+
+    /**
+     * 解码图片
+     *
+     * @param imageBytes 图片字节（PNG、JPEG 等）
+     * @return 图片
+     */
+    public static BufferedImage read(byte[] imageBytes) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            if (image == null) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的图片格式");
+            }
+            return image;
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取图片失败");
+        }
+    }
+
+    /**
+     * 按宽度等比缩小为 RGB 图片，原图不超过该宽度时只转换颜色模式
+     * 缩小超过一半时分多次减半，避免一次双线性插值丢失细节产生锯齿
+     *
+     * @param image    原图
+     * @param maxWidth 最大宽度
+     * @return 缩小后的图片
+     */
+    public static BufferedImage scaleToWidth(BufferedImage image, int maxWidth) {
+        int targetWidth = Math.min(maxWidth, image.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width > targetWidth);
+        return current;
+    }
+
+    /**
+     * 编码为 JPEG，超过目标大小时逐步降低质量，直到满足目标或达到最低质量
+     *
+     * @param image      图片（RGB）
+     * @param quality    初始质量（0-1）
+     * @param minQuality 最低质量（0-1）
+     * @param targetSize 目标大小（字节），不大于 0 表示不限制
+     * @return JPEG 字节
+     */
+    public static byte[] toJpeg(BufferedImage image, float quality, float minQuality, long targetSize) {
+        byte[] bytes = encodeJpeg(image, quality);
+        while (targetSize > 0 && bytes.length > targetSize && quality - QUALITY_STEP >= minQuality - 1e-6) {
+            quality -= QUALITY_STEP;
+            bytes = encodeJpeg(image, quality);
+        }
+        return bytes;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        // JPEG 不支持透明通道，透明区域填充白色
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            // 渐进式 JPEG，列表加载时先显示模糊的整图
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "压缩图片失败");
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
@@ -1,5 +1,8 @@
 package com.easen.aicode.utils;
 
+import com.easen.aicode.constant.ChatMemoryConstant;
+import com.easen.aicode.constant.GenerationConstant;
+import com.easen.aicode.constant.ScreenshotConstant;
 import com.easen.aicode.constant.ThumbConstant;
 
 /**
@@ -18,4 +21,32 @@ public class RedisKeyUtil {
         return ThumbConstant.TEMP_THUMB_KEY_PREFIX.formatted(time);
     }
 
+    /**
+     * 获取 对话记忆水位线 key
+     */
+    public static String getChatMemoryWatermarkKey(Long appId) {
+        return ChatMemoryConstant.WATERMARK_KEY_PREFIX + appId;
+    }
+
+    /**
+     * 获取 应用生成租约 key
+     */
+    public static String getGenerationLeaseKey(Long appId) {
+        return GenerationConstant.LEASE_KEY_PREFIX + appId;
+    }
+
+    /**
+     * 获取 应用生成租约持有者 key
+     */
+    public static String getGenerationLeaseOwnerKey(Long appId) {
+        return GenerationConstant.LEASE_OWNER_KEY_PREFIX + appId;
+    }
+
+    /**
+     * 获取 部署内容指纹对应的封面 key
+     */
+    public static String getCoverFingerprintKey(String fingerprint) {
+        return ScreenshotConstant.COVER_FINGERPRINT_KEY_PREFIX + fingerprint;
+    }
+
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import dev.langchain4j.model.chat.request.ChatRequestParameters;
 import dev.langchain4j.model.chat.request.DefaultChatRequestParameters;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 
 import java.util.List;
 import java.util.Map;
@@ -74,6 +75,11 @@ public interface StreamingChatModel {
                 ChatModelListenerUtils.onError(error, finalChatRequest, provider(), attributes, listeners);
                 handler.onError(error);
             }
+
+            @Override
+            public StreamingHandle streamingHandle() {
+                return handler.streamingHandle();
+            }
         };
 
         onRequest(finalChatRequest, provider(), attributes, listeners);
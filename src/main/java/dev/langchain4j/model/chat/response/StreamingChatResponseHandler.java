@@ -59,4 +59,14 @@ public interface StreamingChatResponseHandler {
      * @param error The error that occurred
      */
     void onError(Throwable error);
+
+    /**
+     * Returns the handle used to cancel the streaming, if the caller supports cancellation.
+     * Models should stop reading the response and skip further callbacks once the handle is cancelled.
+     *
+     * @return the streaming handle, or {@code null} if the streaming cannot be cancelled
+     */
+    default StreamingHandle streamingHandle() {
+        return null;
+    }
 }
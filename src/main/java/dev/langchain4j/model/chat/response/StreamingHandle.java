@@ -0,0 +1,70 @@
+package dev.langchain4j.model.chat.response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A handle that allows a streaming chat to be cancelled from outside.
+ * <p>
+ * Once cancelled, the model stops reading the HTTP response, no further callbacks are delivered
+ * to the handler and no more tools are executed. Cancellation is idempotent and may happen
+ * from any thread.
+ */
+public class StreamingHandle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingHandle.class);
+
+    private final List<Runnable> cancellationCallbacks = new CopyOnWriteArrayList<>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Cancels the streaming. Subsequent invocations have no effect.
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+        }
+        for (Runnable callback : cancellationCallbacks) {
+            runQuietly(callback);
+        }
+        cancellationCallbacks.clear();
+    }
+
+    /**
+     * @return {@code true} if {@link #cancel()} has been invoked
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a callback that releases a resource (e.g. closes an HTTP response body) on cancellation.
+     * If the handle is already cancelled, the callback is invoked immediately.
+     *
+     * @param callback the callback to invoke on cancellation
+     */
+    public void onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancellationCallbacks.add(callback);
+                return;
+            }
+        }
+        runQuietly(callback);
+    }
+
+    private static void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (Exception e) {
+            LOG.warn("Cancellation callback failed", e);
+        }
+    }
+}
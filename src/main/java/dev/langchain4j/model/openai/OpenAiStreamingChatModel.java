@@ -2,6 +2,7 @@ package dev.langchain4j.model.openai;
 
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilderLoader;
 import dev.langchain4j.internal.ExceptionMapper;
 import dev.langchain4j.internal.ToolExecutionRequestBuilder;
 import dev.langchain4j.model.ModelProvider;
@@ -13,6 +14,7 @@ import dev.langchain4j.model.chat.request.ChatRequestParameters;
 import dev.langchain4j.model.chat.request.DefaultChatRequestParameters;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.model.openai.internal.OpenAiClient;
 import dev.langchain4j.model.openai.internal.chat.*;
 import dev.langchain4j.model.openai.internal.shared.StreamOptions;
@@ -44,7 +46,9 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
 
     public OpenAiStreamingChatModel(OpenAiStreamingChatModelBuilder builder) {
         this.client = OpenAiClient.builder()
-                .httpClientBuilder(builder.httpClientBuilder)
+                // Wrapped so that a cancelled StreamingHandle can close the response body
+                .httpClientBuilder(new StreamingHandleHttpClient.Builder(
+                        getOrDefault(builder.httpClientBuilder, HttpClientBuilderLoader::loadHttpClientBuilder)))
                 .baseUrl(getOrDefault(builder.baseUrl, DEFAULT_OPENAI_URL))
                 .apiKey(builder.apiKey)
                 .organizationId(builder.organizationId)
@@ -108,6 +112,11 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
     @Override
     public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
 
+        StreamingHandle streamingHandle = handler.streamingHandle();
+        if (streamingHandle != null && streamingHandle.isCancelled()) {
+            return;
+        }
+
         OpenAiChatRequestParameters parameters = (OpenAiChatRequestParameters) chatRequest.parameters();
         validate(parameters);
 
@@ -122,12 +131,16 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
         OpenAiStreamingResponseBuilder openAiResponseBuilder = new OpenAiStreamingResponseBuilder();
         ToolExecutionRequestBuilder toolBuilder = new ToolExecutionRequestBuilder();
 
-        client.chatCompletion(openAiRequest)
+        StreamingHandleHttpClient.withHandle(streamingHandle, () -> client.chatCompletion(openAiRequest)
                 .onPartialResponse(partialResponse -> {
                     openAiResponseBuilder.append(partialResponse);
                     handle(partialResponse, toolBuilder, handler);
                 })
                 .onComplete(() -> {
+                    // A response body closed by cancellation ends like a normal stream, the partial response is dropped
+                    if (streamingHandle != null && streamingHandle.isCancelled()) {
+                        return;
+                    }
                     if (toolBuilder.hasToolExecutionRequests()) {
                         try {
                             handler.onCompleteToolExecutionRequest(toolBuilder.index(), toolBuilder.build());
@@ -146,7 +159,7 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
                     RuntimeException mappedException = ExceptionMapper.DEFAULT.mapException(throwable);
                     withLoggingExceptions(() -> handler.onError(mappedException));
                 })
-                .execute();
+                .execute());
     }
 
     private static void handle(ChatCompletionResponse partialResponse,
@@ -0,0 +1,148 @@
+package dev.langchain4j.model.openai;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+/**
+ * {@link HttpClient} decorator that binds a streaming request to a {@link StreamingHandle}.
+ * <p>
+ * {@code OpenAiClient} does not expose the HTTP response, so the handle of the current chat is passed
+ * through a thread local: the client calls {@link #execute(HttpRequest, ServerSentEventParser, ServerSentEventListener)}
+ * synchronously on the thread that starts the chat. When the handle is cancelled, the response body is closed,
+ * which aborts the HTTP exchange and stops the parser.
+ */
+class StreamingHandleHttpClient implements HttpClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingHandleHttpClient.class);
+
+    private static final ThreadLocal<StreamingHandle> CURRENT_HANDLE = new ThreadLocal<>();
+
+    private final HttpClient delegate;
+
+    StreamingHandleHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Runs the action with the given handle bound to the streaming requests it sends.
+     */
+    static void withHandle(StreamingHandle handle, Runnable action) {
+        if (handle == null) {
+            action.run();
+            return;
+        }
+        CURRENT_HANDLE.set(handle);
+        try {
+            action.run();
+        } finally {
+            CURRENT_HANDLE.remove();
+        }
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        StreamingHandle handle = CURRENT_HANDLE.get();
+        if (handle == null) {
+            delegate.execute(request, parser, listener);
+            return;
+        }
+        ServerSentEventParser cancellableParser = (inputStream, parserListener) -> {
+            handle.onCancel(() -> closeQuietly(inputStream));
+            if (!handle.isCancelled()) {
+                parser.parse(inputStream, parserListener);
+            }
+        };
+        delegate.execute(request, cancellableParser, new ServerSentEventListener() {
+
+            @Override
+            public void onOpen(SuccessfulHttpResponse response) {
+                listener.onOpen(response);
+            }
+
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                if (!handle.isCancelled()) {
+                    listener.onEvent(event);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                if (handle.isCancelled()) {
+                    LOG.debug("Ignored error of cancelled streaming request: {}", error.getMessage());
+                    return;
+                }
+                listener.onError(error);
+            }
+
+            @Override
+            public void onClose() {
+                listener.onClose();
+            }
+        });
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            LOG.debug("Failed to close cancelled response body: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Builder that wraps the clients built by the delegate.
+     */
+    static class Builder implements HttpClientBuilder {
+
+        private final HttpClientBuilder delegate;
+
+        Builder(HttpClientBuilder delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Duration connectTimeout() {
+            return delegate.connectTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            delegate.connectTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return delegate.readTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            delegate.readTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return new StreamingHandleHttpClient(delegate.build());
+        }
+    }
+}
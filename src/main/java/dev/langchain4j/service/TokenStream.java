@@ -80,4 +80,12 @@ public interface TokenStream {
      * Will send a request to LLM and start response streaming.
      */
     void start();
+
+    /**
+     * Cancels the started stream: closes the connection to the LLM, stops executing tools
+     * and suppresses all further callbacks, including {@link #onCompleteResponse} and {@link #onError}.
+     * <p>
+     * Can be invoked from any thread, before or after {@link #start()}, and more than once.
+     */
+    void cancel();
 }
@@ -0,0 +1,87 @@
+package com.easen.aicode;
+
+import com.easen.aicode.ai.AiCodeGeneratorService;
+import com.easen.aicode.ai.AiCodeGeneratorServiceFactory;
+import com.easen.aicode.ai.GenerationTaskManager;
+import com.easen.aicode.core.AiCodeGeneratorFacade;
+import com.easen.aicode.core.buffer.GenerationBuffer;
+import com.easen.aicode.exception.BusinessException;
+import com.easen.aicode.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AiCodeGeneratorFacadeLeaseTest {
+
+    private static final Long APP_ID = 1L;
+
+    private static final Long USER_ID = 2L;
+
+    private final GenerationTaskManager generationTaskManager = mock(GenerationTaskManager.class);
+
+    private final AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory = mock(AiCodeGeneratorServiceFactory.class);
+
+    private final AiCodeGeneratorFacade facade = new AiCodeGeneratorFacade();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(facade, "generationTaskManager", generationTaskManager);
+        ReflectionTestUtils.setField(facade, "aiCodeGeneratorServiceFactory", aiCodeGeneratorServiceFactory);
+    }
+
+    @Test
+    void leaseRejectedDoesNotRunCallback() {
+        when(generationTaskManager.tryStartTask(APP_ID, USER_ID)).thenReturn(false);
+        AtomicBoolean saved = new AtomicBoolean();
+
+        assertThrows(BusinessException.class, () -> facade.generateAndSaveCodeStream("hi", CodeGenTypeEnum.HTML,
+                APP_ID, USER_ID, new GenerationBuffer(), () -> saved.set(true)));
+
+        assertFalse(saved.get());
+        verifyNoInteractions(aiCodeGeneratorServiceFactory);
+        verify(generationTaskManager, never()).completeTask(APP_ID);
+    }
+
+    @Test
+    void callbackRunsAfterLeaseAndBeforeGeneration() {
+        AiCodeGeneratorService service = mock(AiCodeGeneratorService.class);
+        when(service.generateHtmlCodeStream(anyString())).thenReturn(Flux.never());
+        when(aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(APP_ID, CodeGenTypeEnum.HTML)).thenReturn(service);
+        when(generationTaskManager.tryStartTask(APP_ID, USER_ID)).thenReturn(true);
+        Runnable callback = mock(Runnable.class);
+
+        facade.generateAndSaveCodeStream("hi", CodeGenTypeEnum.HTML, APP_ID, USER_ID, new GenerationBuffer(), callback);
+
+        InOrder order = inOrder(generationTaskManager, callback, aiCodeGeneratorServiceFactory);
+        order.verify(generationTaskManager).tryStartTask(APP_ID, USER_ID);
+        order.verify(callback).run();
+        order.verify(aiCodeGeneratorServiceFactory).getAiCodeGeneratorService(APP_ID, CodeGenTypeEnum.HTML);
+    }
+
+    @Test
+    void callbackFailureReleasesLease() {
+        when(generationTaskManager.tryStartTask(APP_ID, USER_ID)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> facade.generateAndSaveCodeStream("hi", CodeGenTypeEnum.HTML,
+                APP_ID, USER_ID, new GenerationBuffer(), () -> {
+                    throw new IllegalStateException("save failed");
+                }));
+
+        verify(generationTaskManager).completeTask(APP_ID);
+        verifyNoInteractions(aiCodeGeneratorServiceFactory);
+    }
+}
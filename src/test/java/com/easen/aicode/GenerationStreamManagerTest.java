@@ -0,0 +1,94 @@
+package com.easen.aicode;
+
+import com.easen.aicode.ai.GenerationStreamManager;
+import com.easen.aicode.ai.model.message.AiResponseMessage;
+import com.easen.aicode.ai.model.message.StreamFrame;
+import com.easen.aicode.ai.model.message.StreamMessage;
+import com.easen.aicode.config.GenerationStreamConfig;
+import com.easen.aicode.config.GenerationStreamConfig.OrphanPolicy;
+import com.easen.aicode.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationStreamManagerTest {
+
+    private static final Long APP_ID = 1L;
+
+    private static final Long USER_ID = 2L;
+
+    private GenerationStreamManager createManager(OrphanPolicy orphanPolicy) {
+        GenerationStreamConfig config = new GenerationStreamConfig();
+        config.setOrphanPolicy(orphanPolicy);
+        GenerationStreamManager manager = new GenerationStreamManager();
+        ReflectionTestUtils.setField(manager, "generationStreamConfig", config);
+        ReflectionTestUtils.setField(manager, "meterRegistry", new SimpleMeterRegistry());
+        manager.init();
+        return manager;
+    }
+
+    @Test
+    void reattachAfterAbortReceivesErrorInsteadOfCompletion() {
+        GenerationStreamManager manager = createManager(OrphanPolicy.ABORT);
+        Sinks.Many<StreamMessage> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        List<StreamFrame> received = new CopyOnWriteArrayList<>();
+        Disposable owner = manager.launch(APP_ID, USER_ID, upstream.asFlux().doOnCancel(() -> upstreamCancelled.set(true)))
+                .subscribe(received::add);
+        upstream.tryEmitNext(new AiResponseMessage("a"));
+        // 客户端断开
+        owner.dispose();
+        assertTrue(upstreamCancelled.get());
+
+        Viewer viewer = Viewer.subscribe(manager, received.get(0).eventId());
+        assertTrue(viewer.frames.isEmpty());
+        assertFalse(viewer.completed.get());
+        assertInstanceOf(BusinessException.class, viewer.error.get());
+    }
+
+    @Test
+    void reattachUnderContinueReceivesMissedFramesAndCompletion() {
+        GenerationStreamManager manager = createManager(OrphanPolicy.CONTINUE);
+        Sinks.Many<StreamMessage> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        List<StreamFrame> received = new CopyOnWriteArrayList<>();
+        Disposable owner = manager.launch(APP_ID, USER_ID, upstream.asFlux()).subscribe(received::add);
+        upstream.tryEmitNext(new AiResponseMessage("a"));
+        owner.dispose();
+        // 断开期间继续生成
+        upstream.tryEmitNext(new AiResponseMessage("b"));
+
+        Viewer viewer = Viewer.subscribe(manager, received.get(0).eventId());
+        upstream.tryEmitNext(new AiResponseMessage("c"));
+        upstream.tryEmitComplete();
+
+        assertEquals(List.of(2L, 3L), viewer.frames.stream().map(StreamFrame::seq).toList());
+        assertTrue(viewer.completed.get());
+        assertNull(viewer.error.get());
+    }
+
+    /**
+     * 重连的客户端收到的帧和终止信号
+     */
+    private record Viewer(List<StreamFrame> frames, AtomicBoolean completed, AtomicReference<Throwable> error) {
+
+        static Viewer subscribe(GenerationStreamManager manager, String lastEventId) {
+            Viewer viewer = new Viewer(new CopyOnWriteArrayList<>(), new AtomicBoolean(), new AtomicReference<>());
+            manager.resume(APP_ID, lastEventId)
+                    .subscribe(viewer.frames::add, viewer.error::set, () -> viewer.completed.set(true));
+            return viewer;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.easen.aicode;
+
+import com.easen.aicode.core.parser.StreamingCodeParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingCodeParserTest {
+
+    private static final Map<String, String> MULTI_FILE_LANGUAGES = Map.of(
+            "html", "index.html",
+            "css", "style.css",
+            "js", "script.js",
+            "javascript", "script.js"
+    );
+
+    private static final String MULTI_FILE_OUTPUT = """
+            这是一个简单的页面：
+            ```html
+            <!DOCTYPE html>
+            <html><body><h1>Hello `World`</h1></body></html>
+            ```
+            样式如下：
+            ```css
+            h1 { color: red; }
+            ```
+            ```javascript
+            console.log('ok');
+            ```
+            ```css
+            h1 { color: blue; }
+            ```
+            """;
+
+    /**
+     * 收集回调内容的处理器
+     */
+    private static class CollectingHandler implements StreamingCodeParser.CodeBlockHandler {
+
+        private final Map<String, StringBuilder> files = new LinkedHashMap<>();
+
+        private final Map<String, Boolean> ended = new LinkedHashMap<>();
+
+        @Override
+        public void onBlockStart(String fileName) {
+            files.put(fileName, new StringBuilder());
+        }
+
+        @Override
+        public void onBlockContent(String fileName, CharSequence content) {
+            files.get(fileName).append(content);
+        }
+
+        @Override
+        public void onBlockEnd(String fileName) {
+            ended.put(fileName, true);
+        }
+
+        String get(String fileName) {
+            StringBuilder content = files.get(fileName);
+            return content == null ? null : content.toString();
+        }
+    }
+
+    @Test
+    void parseMultiFileInSingleChunk() {
+        CollectingHandler handler = new CollectingHandler();
+        StreamingCodeParser parser = new StreamingCodeParser(MULTI_FILE_LANGUAGES, null, handler);
+        parser.feed(MULTI_FILE_OUTPUT);
+        parser.finish();
+
+        assertEquals("<!DOCTYPE html>\n<html><body><h1>Hello `World`</h1></body></html>", handler.get("index.html"));
+        // 只取第一个 css 代码块
+        assertEquals("h1 { color: red; }", handler.get("style.css"));
+        assertEquals("console.log('ok');", handler.get("script.js"));
+        assertEquals(3, handler.ended.size());
+    }
+
+    @Test
+    void parseMultiFileCharByChar() {
+        CollectingHandler handler = new CollectingHandler();
+        StreamingCodeParser parser = new StreamingCodeParser(MULTI_FILE_LANGUAGES, null, handler);
+        // 逐字符输入，覆盖围栏和空白跨 chunk 的情况
+        for (int i = 0; i < MULTI_FILE_OUTPUT.length(); i++) {
+            parser.feed(String.valueOf(MULTI_FILE_OUTPUT.charAt(i)));
+        }
+        parser.finish();
+
+        assertEquals("<!DOCTYPE html>\n<html><body><h1>Hello `World`</h1></body></html>", handler.get("index.html"));
+        assertEquals("h1 { color: red; }", handler.get("style.css"));
+        assertEquals("console.log('ok');", handler.get("script.js"));
+    }
+
+    @Test
+    void fallbackToWholeOutputWithoutHtmlBlock() {
+        CollectingHandler handler = new CollectingHandler();
+        StreamingCodeParser parser = new StreamingCodeParser(Map.of("html", "index.html"), "index.html", handler);
+        parser.feed("  <html><body>");
+        parser.feed("无代码块</body></html>\n");
+        parser.finish();
+
+        assertEquals("<html><body>无代码块</body></html>", handler.get("index.html"));
+    }
+
+    @Test
+    void keepUnterminatedBlock() {
+        CollectingHandler handler = new CollectingHandler();
+        StreamingCodeParser parser = new StreamingCodeParser(Map.of("html", "index.html"), "index.html", handler);
+        parser.feed("```HTML\n<html>\n<body>`` \n");
+        parser.finish();
+
+        assertEquals("<html>\n<body>``", handler.get("index.html"));
+        assertTrue(handler.ended.get("index.html"));
+    }
+
+    @Test
+    void ignoreUnknownLanguageBlock() {
+        CollectingHandler handler = new CollectingHandler();
+        StreamingCodeParser parser = new StreamingCodeParser(MULTI_FILE_LANGUAGES, null, handler);
+        parser.feed("```bash\nnpm install\n```\n```html\n<p>hi</p>\n```");
+        parser.finish();
+
+        assertFalse(handler.files.containsKey("bash"));
+        assertEquals("<p>hi</p>", handler.get("index.html"));
+        assertEquals(1, handler.files.size());
+    }
+
+    @Test
+    void inlineFenceInProseIsNotBlockStart() {
+        CollectingHandler handler = new CollectingHandler();
+        StreamingCodeParser parser = new StreamingCodeParser(Map.of("html", "index.html"), "index.html", handler);
+        String output = "代码放在 ```html``` 代码块中：\n```html\n<p>hi</p>\n```\n";
+        for (int i = 0; i < output.length(); i++) {
+            parser.feed(String.valueOf(output.charAt(i)));
+        }
+        parser.finish();
+
+        assertEquals("<p>hi</p>", handler.get("index.html"));
+        assertEquals(1, handler.files.size());
+    }
+
+    @Test
+    void fallbackToWholeOutputWhenHtmlBlockIsBlank() {
+        CollectingHandler handler = new CollectingHandler();
+        StreamingCodeParser parser = new StreamingCodeParser(Map.of("html", "index.html"), "index.html", handler);
+        parser.feed("<html><body>正文</body></html>\n```html\n  \n```");
+        parser.finish();
+
+        assertEquals("<html><body>正文</body></html>\n```html\n  \n```", handler.get("index.html"));
+        assertTrue(handler.ended.get("index.html"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.easen.aicode;
+
+import com.easen.aicode.ai.memory.TokenBudgetChatMemory;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBudgetChatMemoryTest {
+
+    private static final String LARGE_HTML = "```html\n" + "<div>hello</div>\n".repeat(500) + "```";
+
+    private TokenBudgetChatMemory createMemory(int maxTokens) {
+        return TokenBudgetChatMemory.builder()
+                .id(1L)
+                .chatMemoryStore(new InMemoryChatMemoryStore())
+                .maxTokens(maxTokens)
+                .maxMessages(100)
+                .keepRecentMessages(2)
+                .build();
+    }
+
+    @Test
+    void digestOldCodeBlocksAndKeepRecentVerbatim() {
+        TokenBudgetChatMemory memory = createMemory(100_000);
+        memory.add(UserMessage.from("做一个页面"));
+        memory.add(AiMessage.from("页面如下：\n" + LARGE_HTML));
+        memory.add(UserMessage.from("改成红色"));
+        memory.add(AiMessage.from("修改后：\n" + LARGE_HTML));
+
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(4, messages.size());
+        String oldText = ((AiMessage) messages.get(1)).text();
+        assertTrue(oldText.startsWith("页面如下：\n[已省略 html:"));
+        assertFalse(oldText.contains("<div>"));
+        // 最近两条消息原样保留
+        assertEquals("修改后：\n" + LARGE_HTML, ((AiMessage) messages.get(3)).text());
+    }
+
+    @Test
+    void evictToolRequestTogetherWithResult() {
+        TokenBudgetChatMemory memory = createMemory(60);
+        memory.add(SystemMessage.from("你是前端工程师"));
+        ToolExecutionRequest request = ToolExecutionRequest.builder()
+                .id("call-1")
+                .name("writeFile")
+                .arguments("{\"relativeFilePath\":\"src/App.vue\"}")
+                .build();
+        memory.add(AiMessage.from(List.of(request)));
+        memory.add(ToolExecutionResultMessage.from(request, "文件写入成功: src/App.vue"));
+        memory.add(UserMessage.from("继续" + "完善页面细节".repeat(20)));
+
+        List<ChatMessage> messages = memory.messages();
+        // 系统消息保留，工具请求和结果一起被淘汰
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertEquals(2, messages.size());
+        assertInstanceOf(UserMessage.class, messages.get(1));
+    }
+}
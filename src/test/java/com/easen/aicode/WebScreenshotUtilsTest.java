@@ -11,9 +11,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 class WebScreenshotUtilsTest {
 
     @Test
-    void saveWebPageScreenshot() {
+    void captureWebPageScreenshot() {
         String testUrl = "";
-        String webPageScreenshot = WebScreenshotUtils.saveWebPageScreenshot(testUrl);
+        byte[] webPageScreenshot = WebScreenshotUtils.captureWebPageScreenshot(testUrl);
         Assertions.assertNotNull(webPageScreenshot);
     }
 }
\ No newline at end of file